@@ -0,0 +1,276 @@
+package com.sbtgdata.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sbtgdata.data.ApiKeyPrincipal;
+import com.sbtgdata.data.ApiKeyService;
+import com.sbtgdata.data.FlowDataService;
+import com.sbtgdata.data.FlowIngestService;
+import com.sbtgdata.data.FlowRollupService;
+import com.sbtgdata.data.IngestRejectedException;
+import com.sbtgdata.data.RangeSnapshot;
+import com.sbtgdata.data.RollupResolution;
+import com.sbtgdata.data.User;
+import com.sbtgdata.data.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/flows/{flowId}/data")
+public class FlowDataController {
+
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    static final String RANGE_UNIT = "records";
+
+    private static final Pattern OPEN_RANGE = Pattern.compile(RANGE_UNIT + "=(\\d+)-");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE = new TypeReference<>() {
+    };
+
+    @Autowired
+    private ApiKeyService apiKeyService;
+
+    @Autowired
+    private FlowIngestService flowIngestService;
+
+    @Autowired
+    private FlowDataService flowDataService;
+
+    @Autowired
+    private FlowRollupService flowRollupService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ingest.max-records-per-request:10000}")
+    private int maxRecordsPerRequest = 10000;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> ingest(@PathVariable String flowId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String headerKey,
+            @RequestParam(value = "API_KEY", required = false) String queryKey,
+            InputStream body) {
+        Optional<ApiKeyPrincipal> principal = apiKeyService.resolve(headerKey != null ? headerKey : queryKey);
+        if (principal.isEmpty()) {
+            return error(HttpStatus.UNAUTHORIZED, "Nieprawidłowy klucz API");
+        }
+
+        switch (flowIngestService.checkAccess(flowId, principal.get().userId())) {
+            case NOT_FOUND:
+                return error(HttpStatus.NOT_FOUND, "Nie znaleziono przepływu");
+            case INACTIVE:
+                return error(HttpStatus.CONFLICT, "Przepływ jest zatrzymany");
+            default:
+                break;
+        }
+
+        List<Map<String, Object>> records;
+        try {
+            records = readRecords(body);
+        } catch (TooManyRecordsException ex) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Maksymalna liczba rekordów w żądaniu to " + maxRecordsPerRequest);
+        } catch (JsonProcessingException ex) {
+            return error(HttpStatus.BAD_REQUEST, "Nieprawidłowy format danych: " + ex.getOriginalMessage());
+        } catch (IllegalArgumentException ex) {
+            return error(HttpStatus.BAD_REQUEST, "Nieprawidłowy format danych: " + ex.getMessage());
+        } catch (IOException ex) {
+            return error(HttpStatus.BAD_REQUEST, "Nie udało się odczytać danych");
+        }
+
+        try {
+            flowIngestService.enqueue(flowId, principal.get().userId(), records);
+        } catch (IngestRejectedException ex) {
+            long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(Map.of("error", ex.getMessage(), "reason", ex.getReason()));
+        } catch (NumberFormatException ex) {
+            return error(HttpStatus.BAD_REQUEST, "Nieprawidłowa wartość liczbowa: " + ex.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("accepted", records.size()));
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String flowId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String headerKey,
+            @RequestParam(value = "API_KEY", required = false) String queryKey,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) RollupResolution resolution,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            Principal principal) throws IOException {
+        String apiKey = headerKey != null ? headerKey : queryKey;
+        Optional<String> userId = apiKey != null
+                ? apiKeyService.resolve(apiKey).map(ApiKeyPrincipal::userId)
+                : Optional.ofNullable(principal).flatMap(p -> userService.findByEmail(p.getName())).map(User::getId);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (flowIngestService.checkAccess(flowId, userId.get()) == FlowIngestService.FlowAccess.NOT_FOUND) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Instant end = to != null ? to : Instant.now();
+        RangeSnapshot snapshot = resolution != null
+                ? flowRollupService.snapshotRange(flowId, resolution, from, end)
+                : flowDataService.snapshotRange(flowId, from, end);
+        String etag = etag(flowId, from, end, resolution, gzip, snapshot);
+
+        // wznowienie liczone w wierszach danych i tylko dla tej samej wersji danych
+        long total = snapshot.rows();
+        long offset = range != null && etag.equals(ifRange) ? parseRangeStart(range) : 0;
+        ResponseEntity.BodyBuilder response;
+        if (offset > 0) {
+            if (offset >= total) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, RANGE_UNIT + " */" + total)
+                        .build();
+            }
+            response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, RANGE_UNIT + " " + offset + "-" + (total - 1) + "/" + total);
+        } else {
+            response = ResponseEntity.ok();
+        }
+
+        String fileName = "flow-" + flowId + (resolution != null ? "-" + resolution.name().toLowerCase() : "")
+                + (gzip ? ".csv.gz" : ".csv");
+        return response
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build()
+                        .toString())
+                .header(HttpHeaders.ACCEPT_RANGES, RANGE_UNIT)
+                .header("X-Record-Count", String.valueOf(total))
+                .eTag(etag)
+                .body(out -> writeExport(flowId, from, end, resolution, gzip, offset, out));
+    }
+
+    private static String etag(String flowId, Instant from, Instant to, RollupResolution resolution, boolean gzip,
+            RangeSnapshot snapshot) {
+        String key = String.join("|", flowId, String.valueOf(from), to.toString(), String.valueOf(resolution),
+                String.valueOf(gzip), snapshot.version());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // wznowiony plik gzip to osobny człon, który dopisany do pobranej części daje poprawny plik
+    private void writeExport(String flowId, Instant from, Instant to, RollupResolution resolution, boolean gzip,
+            long skip, OutputStream out) throws IOException {
+        if (gzip) {
+            try (GZIPOutputStream compressed = new GZIPOutputStream(out, GZIP_BUFFER_SIZE)) {
+                writeCsv(flowId, from, to, resolution, skip, compressed);
+            }
+        } else {
+            writeCsv(flowId, from, to, resolution, skip, out);
+        }
+        out.flush();
+    }
+
+    private void writeCsv(String flowId, Instant from, Instant to, RollupResolution resolution, long skip,
+            OutputStream out) throws IOException {
+        if (resolution != null) {
+            flowRollupService.writeCsv(flowId, resolution, from, to, skip, out);
+        } else {
+            flowDataService.writeCsv(flowId, from, to, skip, out);
+        }
+    }
+
+    private long parseRangeStart(String range) {
+        Matcher matcher = OPEN_RANGE.matcher(range.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    List<Map<String, Object>> readRecords(InputStream body) throws IOException {
+        List<Map<String, Object>> records = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                return records;
+            }
+
+            if (first == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    add(records, parser.readValueAs(RECORD_TYPE));
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    throw new IllegalArgumentException("Elementy tablicy muszą być obiektami");
+                }
+                if (parser.nextToken() != null) {
+                    throw new IllegalArgumentException("Nieoczekiwane dane po tablicy");
+                }
+                return records;
+            }
+
+            if (first != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Rekord musi być obiektem JSON");
+            }
+            try (MappingIterator<Map<String, Object>> values = objectMapper.readerFor(RECORD_TYPE)
+                    .readValues(parser)) {
+                while (values.hasNextValue()) {
+                    add(records, values.nextValue());
+                }
+            }
+        }
+        return records;
+    }
+
+    private void add(List<Map<String, Object>> records, Map<String, Object> record) {
+        if (records.size() >= maxRecordsPerRequest) {
+            throw new TooManyRecordsException();
+        }
+        records.add(record);
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Map.of("error", message));
+    }
+
+    private static class TooManyRecordsException extends RuntimeException {
+    }
+}
@@ -1,6 +1,7 @@
 package com.sbtgdata.config;
 
 import com.sbtgdata.data.Role;
+import com.sbtgdata.data.RolePermissionCache;
 import com.sbtgdata.data.RoleRepository;
 import com.sbtgdata.data.User;
 import com.sbtgdata.data.UserRepository;
@@ -20,10 +21,12 @@ public class DataInitializer {
     public CommandLineRunner initializeData(UserRepository userRepository,
             RoleRepository roleRepository,
             PasswordEncoder passwordEncoder,
-            ViewService viewService) {
+            ViewService viewService,
+            RolePermissionCache rolePermissionCache) {
         return args -> {
             createRoleIfNotFound(roleRepository, "ADMIN", viewService.getAllViews().keySet());
             createRoleIfNotFound(roleRepository, "USER", new HashSet<>());
+            rolePermissionCache.invalidate();
 
             User admin;
             if (userRepository.existsByEmail("admin")) {
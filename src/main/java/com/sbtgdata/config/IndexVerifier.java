@@ -0,0 +1,183 @@
+package com.sbtgdata.config;
+
+import com.sbtgdata.data.DataFlow;
+import com.sbtgdata.data.FlowError;
+import com.sbtgdata.data.FlowRecord;
+import com.sbtgdata.data.FlowRollup;
+import com.sbtgdata.data.OutboxEvent;
+import com.sbtgdata.data.Role;
+import com.sbtgdata.data.User;
+import com.sbtgdata.data.UserDeletionJob;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Component
+public class IndexVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexVerifier.class);
+
+    static final List<Class<?>> INDEXED_ENTITIES = List.of(DataFlow.class, FlowError.class, FlowRecord.class,
+            FlowRollup.class, User.class, Role.class, OutboxEvent.class, UserDeletionJob.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${mongodb.indexes.create-missing:true}")
+    private boolean createMissing = true;
+
+    public IndexVerifier(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void verifyIndexes() {
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        for (Class<?> entity : INDEXED_ENTITIES) {
+            String collection = mongoTemplate.getCollectionName(entity);
+            try {
+                verifyCollection(entity, collection, resolver);
+            } catch (RuntimeException ex) {
+                logger.error("Weryfikacja indeksów kolekcji {} nieudana: {}", collection, ex.getMessage());
+            }
+        }
+    }
+
+    IndexReport verifyCollection(Class<?> entity, String collection, MongoPersistentEntityIndexResolver resolver) {
+        IndexReport report = new IndexReport();
+        IndexOperations indexOps = mongoTemplate.indexOps(entity);
+        Map<List<Map.Entry<String, Object>>, IndexInfo> existing = indexOps.getIndexInfo().stream()
+                .collect(Collectors.toMap(IndexVerifier::keysOf, info -> info, (first, second) -> first));
+
+        List<List<Map.Entry<String, Object>>> declaredKeys = new ArrayList<>();
+        for (IndexDefinition definition : resolver.resolveIndexFor(entity)) {
+            List<Map.Entry<String, Object>> keys = normalize(List.copyOf(definition.getIndexKeys().entrySet()));
+            declaredKeys.add(keys);
+            String description = definition.getIndexKeys().toJson();
+            IndexInfo current = existing.get(keys);
+            if (current != null) {
+                String difference = optionsDifference(definition.getIndexOptions(), current);
+                if (difference != null) {
+                    report.conflicting.add(current.getName());
+                    logger.error("Indeks {} w kolekcji {} ma inne opcje niż w modelu: {}", current.getName(),
+                            collection, difference);
+                }
+                continue;
+            }
+
+            if (!createMissing) {
+                report.missing.add(description);
+                logger.warn("Brak indeksu {} w kolekcji {}", description, collection);
+                continue;
+            }
+            try {
+                String name = indexOps.createIndex(definition);
+                report.created.add(name);
+                logger.info("Utworzono indeks {} {} w kolekcji {}", name, description, collection);
+            } catch (RuntimeException ex) {
+                report.missing.add(description);
+                logger.error("Nie udało się utworzyć indeksu {} w kolekcji {}: {}", description, collection,
+                        ex.getMessage());
+            }
+        }
+
+        AggregationOperation indexStats = context -> new Document("$indexStats", new Document());
+        for (Document stats : mongoTemplate.aggregate(Aggregation.newAggregation(indexStats), collection,
+                Document.class)) {
+            String name = stats.getString("name");
+            if ("_id_".equals(name)) {
+                continue;
+            }
+            List<Map.Entry<String, Object>> keys = normalize(List.copyOf(stats.get("key", Document.class).entrySet()));
+            Document accesses = stats.get("accesses", Document.class);
+            long ops = accesses != null ? ((Number) accesses.get("ops")).longValue() : 0;
+            if (!declaredKeys.contains(keys)) {
+                report.undeclared.add(name);
+                logger.warn("Indeks {} w kolekcji {} nie jest zadeklarowany w modelu (użycia: {})", name,
+                        collection, ops);
+            } else if (ops == 0) {
+                report.unused.add(name);
+                logger.info("Indeks {} w kolekcji {} nie był używany od {}", name, collection,
+                        accesses != null ? accesses.get("since") : "?");
+            }
+        }
+        return report;
+    }
+
+    private static String optionsDifference(Document declared, IndexInfo current) {
+        boolean unique = declared.getBoolean("unique", false);
+        if (unique != current.isUnique()) {
+            return "unique=" + current.isUnique() + ", oczekiwano " + unique;
+        }
+        boolean sparse = declared.getBoolean("sparse", false);
+        if (sparse != current.isSparse()) {
+            return "sparse=" + current.isSparse() + ", oczekiwano " + sparse;
+        }
+        Long expireAfter = declared.get("expireAfterSeconds") instanceof Number seconds ? seconds.longValue() : null;
+        Long currentExpireAfter = current.getExpireAfter().map(Duration::getSeconds).orElse(null);
+        if (!Objects.equals(expireAfter, currentExpireAfter)) {
+            return "expireAfterSeconds=" + currentExpireAfter + ", oczekiwano " + expireAfter;
+        }
+        Object partial = declared.get("partialFilterExpression");
+        String expectedPartial = partial instanceof Document document ? document.toJson() : null;
+        String currentPartial = current.getPartialFilterExpression();
+        if (expectedPartial != null || currentPartial != null) {
+            if (expectedPartial == null || currentPartial == null
+                    || !Document.parse(expectedPartial).equals(Document.parse(currentPartial))) {
+                return "partialFilterExpression=" + currentPartial + ", oczekiwano " + expectedPartial;
+            }
+        }
+        return null;
+    }
+
+    private static List<Map.Entry<String, Object>> keysOf(IndexInfo info) {
+        List<Map.Entry<String, Object>> keys = new ArrayList<>();
+        for (IndexField field : info.getIndexFields()) {
+            Object direction = field.getDirection() == null ? field.getKey()
+                    : field.getDirection() == Sort.Direction.ASC ? 1 : -1;
+            keys.add(Map.entry(field.getKey(), direction));
+        }
+        return keys;
+    }
+
+    private static List<Map.Entry<String, Object>> normalize(List<Map.Entry<String, Object>> keys) {
+        return keys.stream()
+                .map(entry -> Map.entry(entry.getKey(),
+                        entry.getValue() instanceof Number number ? (Object) number.intValue() : entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    static final class IndexReport {
+
+        final List<String> created = new ArrayList<>();
+        final List<String> missing = new ArrayList<>();
+        final List<String> conflicting = new ArrayList<>();
+        final List<String> undeclared = new ArrayList<>();
+        final List<String> unused = new ArrayList<>();
+    }
+}
@@ -0,0 +1,136 @@
+package com.sbtgdata.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public class LoginThrottle {
+
+    public enum Decision {
+        ALLOWED, ACCOUNT_BLOCKED, IP_BLOCKED
+    }
+
+    private static final long BASE_ACCOUNT_DELAY_MILLIS = 1000;
+
+    private final int maxAccountFailures;
+    private final int maxIpFailures;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final Map<String, FailureWindow> accountFailures;
+    private final Map<String, FailureWindow> ipFailures;
+
+    public LoginThrottle(int maxAccountFailures, int maxIpFailures, Duration window, int maxTrackedKeys) {
+        this(maxAccountFailures, maxIpFailures, window, maxTrackedKeys, System::currentTimeMillis);
+    }
+
+    LoginThrottle(int maxAccountFailures, int maxIpFailures, Duration window, int maxTrackedKeys,
+            LongSupplier clock) {
+        this.maxAccountFailures = maxAccountFailures;
+        this.maxIpFailures = maxIpFailures;
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+        this.accountFailures = boundedMap(maxTrackedKeys);
+        this.ipFailures = boundedMap(maxTrackedKeys);
+    }
+
+    // IP ma twardy limit w oknie, konto po limicie dostaje kolejne próby co 1 s, 2 s, 4 s... (maks. okno)
+    public synchronized Decision tryAcquire(String account, String ip) {
+        long now = clock.getAsLong();
+        if (!reserveIp(ip, now)) {
+            return Decision.IP_BLOCKED;
+        }
+        if (!reserveAccount(accountKey(account), now)) {
+            release(ipFailures, ip);
+            return Decision.ACCOUNT_BLOCKED;
+        }
+        return Decision.ALLOWED;
+    }
+
+    public synchronized void recordSuccess(String account, String ip) {
+        String accountKey = accountKey(account);
+        if (accountKey != null) {
+            accountFailures.remove(accountKey);
+        }
+        release(ipFailures, ip);
+    }
+
+    public synchronized void release(String account, String ip) {
+        release(accountFailures, accountKey(account));
+        release(ipFailures, ip);
+    }
+
+    public synchronized void evictExpired() {
+        long now = clock.getAsLong();
+        accountFailures.values().removeIf(window -> isExpired(window, now));
+        ipFailures.values().removeIf(window -> isExpired(window, now));
+    }
+
+    synchronized int trackedKeys() {
+        return accountFailures.size() + ipFailures.size();
+    }
+
+    private boolean reserveIp(String ip, long now) {
+        if (ip == null) {
+            return true;
+        }
+        FailureWindow current = current(ipFailures.get(ip), now);
+        if (current.count >= maxIpFailures) {
+            return false;
+        }
+        ipFailures.put(ip, new FailureWindow(current.start, current.count + 1, now));
+        return true;
+    }
+
+    private boolean reserveAccount(String accountKey, long now) {
+        if (accountKey == null) {
+            return true;
+        }
+        FailureWindow current = current(accountFailures.get(accountKey), now);
+        if (current.count >= maxAccountFailures && now - current.last < accountDelay(current.count)) {
+            return false;
+        }
+        accountFailures.put(accountKey, new FailureWindow(current.start, current.count + 1, now));
+        return true;
+    }
+
+    private long accountDelay(int failures) {
+        int excess = Math.min(failures - maxAccountFailures, 30);
+        return Math.min(BASE_ACCOUNT_DELAY_MILLIS << excess, windowMillis);
+    }
+
+    private FailureWindow current(FailureWindow window, long now) {
+        return window == null || isExpired(window, now) ? new FailureWindow(now, 0, now) : window;
+    }
+
+    private boolean isExpired(FailureWindow window, long now) {
+        return now - window.start >= windowMillis;
+    }
+
+    private void release(Map<String, FailureWindow> failures, String key) {
+        if (key == null) {
+            return;
+        }
+        failures.computeIfPresent(key, (k, window) -> window.count <= 1
+                ? null
+                : new FailureWindow(window.start, window.count - 1, window.last));
+    }
+
+    private String accountKey(String account) {
+        return account != null ? account.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static Map<String, FailureWindow> boundedMap(int maxEntries) {
+        // Po przekroczeniu limitu wypadają najdawniej używane wpisy, nowe klucze są zawsze przyjmowane
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FailureWindow> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private record FailureWindow(long start, int count, long last) {
+    }
+}
@@ -1,15 +1,107 @@
 package com.sbtgdata.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${webhook.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion;
+
+    @Value("${webhook.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${webhook.http.read-timeout:10s}")
+    private Duration readTimeout;
+
+    @Value("${webhook.http.max-concurrent-per-host:16}")
+    private int maxConcurrentPerHost;
+
+    @Value("${webhook.http.acquire-timeout:500ms}")
+    private Duration acquireTimeout;
+
+    @Value("${webhook.http.request-timeout:15s}")
+    private Duration requestTimeout;
+
+    @Value("${webhook.circuit.window-size:20}")
+    private int circuitWindowSize;
+
+    @Value("${webhook.circuit.minimum-calls:10}")
+    private int circuitMinimumCalls;
+
+    @Value("${webhook.circuit.failure-rate-threshold:50}")
+    private double circuitFailureRateThreshold;
+
+    @Value("${webhook.circuit.slow-call-rate-threshold:80}")
+    private double circuitSlowCallRateThreshold;
+
+    @Value("${webhook.circuit.slow-call-duration:3s}")
+    private Duration circuitSlowCallDuration;
+
+    @Value("${webhook.circuit.open-duration:30s}")
+    private Duration circuitOpenDuration;
+
+    @Value("${webhook.circuit.half-open-probes:3}")
+    private int circuitHalfOpenProbes;
+
+    @Value("${webhook.limit.initial:4}")
+    private int limitInitial;
+
+    @Value("${webhook.limit.min:1}")
+    private int limitMin;
+
+    @Value("${webhook.limit.max:16}")
+    private int limitMax;
+
+    @Value("${webhook.limit.backoff-ratio:0.5}")
+    private double limitBackoffRatio;
+
+    @Value("${webhook.executor.threads:16}")
+    private int executorThreads;
+
+    @Value("${webhook.executor.queue-capacity:256}")
+    private int executorQueueCapacity;
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public ThreadPoolTaskExecutor webhookExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(executorThreads);
+        executor.setMaxPoolSize(executorThreads);
+        executor.setQueueCapacity(executorQueueCapacity);
+        executor.setThreadNamePrefix("webhook-");
+        executor.initialize();
+        return executor;
     }
-}
 
+    @Bean
+    public RestTemplate restTemplate(MeterRegistry meterRegistry) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new WebhookCircuitBreakerInterceptor(
+                new WebhookCircuitBreakerInterceptor.Settings(circuitWindowSize, circuitMinimumCalls,
+                        circuitFailureRateThreshold, circuitSlowCallRateThreshold, circuitSlowCallDuration,
+                        circuitOpenDuration, circuitHalfOpenProbes, limitInitial, limitMin, limitMax,
+                        limitBackoffRatio),
+                meterRegistry));
+        restTemplate.getInterceptors().add(
+                new WebhookBulkheadInterceptor(maxConcurrentPerHost, acquireTimeout, requestTimeout, meterRegistry));
+        return restTemplate;
+    }
+}
@@ -1,13 +1,19 @@
 package com.sbtgdata.config;
 
 import com.sbtgdata.data.User;
+import com.sbtgdata.data.UserChangedEvent;
 import com.sbtgdata.data.UserService;
+import com.vaadin.flow.server.VaadinSession;
 import com.vaadin.flow.spring.security.AuthenticationContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class SecurityService {
@@ -17,6 +23,8 @@ public class SecurityService {
     
     @Autowired
     private AuthenticationContext authenticationContext;
+
+    private final Map<String, AtomicLong> userGenerations = new ConcurrentHashMap<>();
     
     public void logout() {
         authenticationContext.logout();
@@ -42,10 +50,37 @@ public class SecurityService {
     
     public User getCurrentUser() {
         Optional<String> emailOpt = getAuthenticatedUser();
-        if (emailOpt.isPresent()) {
-            return userService.findByEmail(emailOpt.get()).orElse(null);
+        if (emailOpt.isEmpty()) {
+            return null;
+        }
+
+        String email = emailOpt.get();
+        VaadinSession session = VaadinSession.getCurrent();
+        if (session == null) {
+            return userService.findByEmail(email).orElse(null);
         }
-        return null;
+
+        long generation = generationOf(email).get();
+        CachedUser cached = session.getAttribute(CachedUser.class);
+        if (cached != null && cached.email().equals(email) && cached.generation() == generation) {
+            return cached.user();
+        }
+
+        User user = userService.findByEmail(email).orElse(null);
+        session.setAttribute(CachedUser.class, new CachedUser(email, generation, user));
+        return user;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        generationOf(event.getEmail()).incrementAndGet();
+    }
+
+    private AtomicLong generationOf(String email) {
+        return userGenerations.computeIfAbsent(email, key -> new AtomicLong());
+    }
+
+    private record CachedUser(String email, long generation, User user) {
     }
 }
 
@@ -0,0 +1,144 @@
+package com.sbtgdata.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThrottledAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final LoginThrottle loginThrottle;
+    private final ThreadPoolExecutor executor;
+    private final Duration queueTimeout;
+    private final Timer hashTimer;
+    private final Timer queueWaitTimer;
+    private final Counter throttledAccount;
+    private final Counter throttledIp;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public ThrottledAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+            LoginThrottle loginThrottle, int threads, int queueCapacity, Duration queueTimeout,
+            MeterRegistry meterRegistry) {
+        super(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+        this.loginThrottle = loginThrottle;
+        this.queueTimeout = queueTimeout;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "login-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTimer = Timer.builder("login.hash").register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("login.queue.wait").register(meterRegistry);
+        this.throttledAccount = Counter.builder("login.rejected").tag("reason", "account").register(meterRegistry);
+        this.throttledIp = Counter.builder("login.rejected").tag("reason", "ip").register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("login.rejected").tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.rejectedTimeout = Counter.builder("login.rejected").tag("reason", "timeout").register(meterRegistry);
+        Gauge.builder("login.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("login.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String account = authentication.getName();
+        String ip = authentication.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress()
+                : null;
+
+        switch (loginThrottle.tryAcquire(account, ip)) {
+            case IP_BLOCKED -> {
+                throttledIp.increment();
+                throw new LoginThrottledException("Zbyt wiele nieudanych prób logowania, spróbuj ponownie później");
+            }
+            case ACCOUNT_BLOCKED -> {
+                throttledAccount.increment();
+                throw new LoginThrottledException("Zbyt wiele nieudanych prób logowania, spróbuj ponownie później");
+            }
+            case ALLOWED -> {
+            }
+        }
+
+        try {
+            Authentication result = verify(authentication);
+            loginThrottle.recordSuccess(account, ip);
+            return result;
+        } catch (BadCredentialsException ex) {
+            // Zarezerwowana próba zostaje policzona jako nieudana
+            throw ex;
+        } catch (RuntimeException ex) {
+            loginThrottle.release(account, ip);
+            throw ex;
+        }
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+            UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+        long start = System.nanoTime();
+        try {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+        } finally {
+            hashTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Authentication verify(Authentication authentication) {
+        long submitted = System.nanoTime();
+        Future<Authentication> future;
+        try {
+            future = executor.submit(() -> {
+                queueWaitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return super.authenticate(authentication);
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedQueueFull.increment();
+            throw new AuthenticationServiceException("Serwer jest przeciążony, spróbuj zalogować się za chwilę");
+        }
+
+        try {
+            return future.get(queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof AuthenticationException authenticationException) {
+                throw authenticationException;
+            }
+            throw new AuthenticationServiceException("Błąd logowania", ex.getCause());
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            rejectedTimeout.increment();
+            throw new AuthenticationServiceException("Serwer jest przeciążony, spróbuj zalogować się za chwilę");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Przerwano logowanie");
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.sbtgdata.config;
 
 import com.vaadin.flow.spring.security.VaadinWebSecurity;
 import com.sbtgdata.views.LoginView;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -12,15 +15,42 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 public class VaadinSecurityConfig extends VaadinWebSecurity {
 
+    private static final String FLOW_DATA_PATH = "/flows/*/data";
+
     private final UserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${security.login.threads:2}")
+    private int loginThreads;
+
+    @Value("${security.login.queue-capacity:32}")
+    private int loginQueueCapacity;
+
+    @Value("${security.login.queue-timeout:5s}")
+    private Duration loginQueueTimeout;
+
+    @Value("${security.login.account.max-failures:5}")
+    private int maxAccountFailures;
+
+    @Value("${security.login.ip.max-failures:20}")
+    private int maxIpFailures;
+
+    @Value("${security.login.failure-window:15m}")
+    private Duration failureWindow;
 
-    public VaadinSecurityConfig(UserDetailsService userDetailsService) {
+    @Value("${security.login.max-tracked-keys:100000}")
+    private int maxTrackedLoginKeys;
+
+    public VaadinSecurityConfig(UserDetailsService userDetailsService, MeterRegistry meterRegistry) {
         this.userDetailsService = userDetailsService;
+        this.meterRegistry = meterRegistry;
     }
 
     @Bean
@@ -28,15 +58,33 @@ public class VaadinSecurityConfig extends VaadinWebSecurity {
         return new BCryptPasswordEncoder();
     }
 
+    @Bean
+    public LoginThrottle loginThrottle() {
+        return new LoginThrottle(maxAccountFailures, maxIpFailures, failureWindow, maxTrackedLoginKeys);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ThrottledAuthenticationProvider throttledAuthenticationProvider() {
+        return new ThrottledAuthenticationProvider(userDetailsService, passwordEncoder(), loginThrottle(),
+                loginThreads, loginQueueCapacity, loginQueueTimeout, meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${security.login.evict-interval-ms:60000}")
+    public void evictExpiredLoginFailures() {
+        loginThrottle().evictExpired();
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.authorizeHttpRequests(auth -> auth
-                .requestMatchers("/images/**").permitAll());
+                .requestMatchers("/images/**").permitAll()
+                .requestMatchers(FLOW_DATA_PATH).permitAll());
+        http.csrf(csrf -> csrf.ignoringRequestMatchers(FLOW_DATA_PATH));
         super.configure(http);
 
         setLoginView(http, LoginView.class);
 
-        http.userDetailsService(userDetailsService);
+        http.authenticationProvider(throttledAuthenticationProvider());
 
         SimpleUrlAuthenticationSuccessHandler successHandler = new SimpleUrlAuthenticationSuccessHandler();
         successHandler.setDefaultTargetUrl("/dataflows");
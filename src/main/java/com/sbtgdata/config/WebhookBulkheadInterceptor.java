@@ -0,0 +1,174 @@
+package com.sbtgdata.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class WebhookBulkheadInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final ScheduledThreadPoolExecutor DEADLINES = createDeadlineScheduler();
+
+    private final int maxConcurrentPerHost;
+    private final Duration acquireTimeout;
+    private final Duration requestTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public WebhookBulkheadInterceptor(int maxConcurrentPerHost, Duration acquireTimeout, Duration requestTimeout,
+            MeterRegistry meterRegistry) {
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.acquireTimeout = acquireTimeout;
+        this.requestTimeout = requestTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String host = request.getURI().getAuthority();
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(host, this::createBulkhead);
+
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + requestTimeout.toNanos();
+        boolean acquired;
+        try {
+            long wait = Math.min(acquireTimeout.toNanos(), requestTimeout.toNanos());
+            acquired = bulkhead.permits.tryAcquire(wait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Przerwano oczekiwanie na połączenie z " + host);
+        }
+        bulkhead.waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            bulkhead.rejected.increment();
+            throw new ResourceAccessException("Przekroczono limit równoległych wywołań webhooka dla " + host);
+        }
+
+        long callStart = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            release(bulkhead, host, "error", callStart);
+            throw e;
+        }
+
+        String outcome = response.getStatusCode().is2xxSuccessful() ? "success" : "http_error";
+        PermitHoldingResponse held = new PermitHoldingResponse(response,
+                () -> release(bulkhead, host, outcome, callStart));
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            held.close();
+            throw new ResourceAccessException("Przekroczono łączny czas wywołania webhooka dla " + host);
+        }
+        held.deadline = DEADLINES.schedule(held::close, remaining, TimeUnit.NANOSECONDS);
+        return held;
+    }
+
+    private void release(Bulkhead bulkhead, String host, String outcome, long callStart) {
+        bulkhead.permits.release();
+        Timer.builder("webhook.calls")
+                .tag("host", host)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - callStart, TimeUnit.NANOSECONDS);
+    }
+
+    private Bulkhead createBulkhead(String host) {
+        Semaphore permits = new Semaphore(maxConcurrentPerHost);
+        Gauge.builder("webhook.bulkhead.in_flight", permits, p -> maxConcurrentPerHost - p.availablePermits())
+                .tag("host", host)
+                .register(meterRegistry);
+        Gauge.builder("webhook.bulkhead.queued", permits, Semaphore::getQueueLength)
+                .tag("host", host)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("webhook.bulkhead.rejected")
+                .tag("host", host)
+                .register(meterRegistry);
+        Timer waitTimer = Timer.builder("webhook.bulkhead.wait")
+                .tag("host", host)
+                .register(meterRegistry);
+        return new Bulkhead(permits, rejected, waitTimer);
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private record Bulkhead(Semaphore permits, Counter rejected, Timer waitTimer) {
+    }
+
+    private static final class PermitHoldingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> deadline;
+
+        private PermitHoldingResponse(ClientHttpResponse delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> pending = deadline;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            try {
+                delegate.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.sbtgdata.config;
+
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+
+public class WebhookCallNotPermittedException extends ResourceAccessException {
+
+    private final Duration retryAfter;
+
+    public WebhookCallNotPermittedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
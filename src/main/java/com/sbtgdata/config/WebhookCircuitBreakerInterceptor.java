@@ -0,0 +1,294 @@
+package com.sbtgdata.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+public class WebhookCircuitBreakerInterceptor implements ClientHttpRequestInterceptor {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    public record Settings(int windowSize, int minimumCalls, double failureRateThreshold,
+            double slowCallRateThreshold, Duration slowCallDuration, Duration openDuration, int halfOpenProbes,
+            int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+    }
+
+    private final Settings settings;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final Map<String, EndpointCircuit> circuits = new ConcurrentHashMap<>();
+
+    public WebhookCircuitBreakerInterceptor(Settings settings, MeterRegistry meterRegistry) {
+        this(settings, meterRegistry, System::nanoTime);
+    }
+
+    WebhookCircuitBreakerInterceptor(Settings settings, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        URI uri = request.getURI();
+        String endpoint = uri.getScheme() + "://" + uri.getAuthority() + uri.getPath();
+        EndpointCircuit circuit = circuits.computeIfAbsent(endpoint, this::createCircuit);
+
+        circuit.acquire();
+        long start = nanoClock.getAsLong();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException ex) {
+            circuit.onResult(nanoClock.getAsLong() - start, true);
+            throw ex;
+        } catch (RuntimeException ex) {
+            circuit.release();
+            throw ex;
+        }
+        boolean failure;
+        try {
+            failure = isFailure(response.getStatusCode());
+        } catch (IOException | RuntimeException ex) {
+            response.close();
+            circuit.onResult(nanoClock.getAsLong() - start, true);
+            throw ex;
+        }
+        // czas i wynik są liczone do zamknięcia odpowiedzi, więc obejmują też odczyt treści
+        return new TimedResponse(response,
+                bodyFailed -> circuit.onResult(nanoClock.getAsLong() - start, failure || bodyFailed));
+    }
+
+    State getState(String endpoint) {
+        EndpointCircuit circuit = circuits.get(endpoint);
+        return circuit != null ? circuit.state : State.CLOSED;
+    }
+
+    double getLimit(String endpoint) {
+        EndpointCircuit circuit = circuits.get(endpoint);
+        return circuit != null ? circuit.limit : settings.initialLimit();
+    }
+
+    private boolean isFailure(HttpStatusCode status) {
+        return status.is5xxServerError() || status.value() == 429;
+    }
+
+    private EndpointCircuit createCircuit(String endpoint) {
+        EndpointCircuit circuit = new EndpointCircuit(endpoint,
+                Counter.builder("webhook.circuit.rejected")
+                        .tag("endpoint", endpoint)
+                        .tag("reason", "open")
+                        .register(meterRegistry),
+                Counter.builder("webhook.circuit.rejected")
+                        .tag("endpoint", endpoint)
+                        .tag("reason", "limit")
+                        .register(meterRegistry));
+        Gauge.builder("webhook.circuit.state", circuit, c -> c.state.ordinal())
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("webhook.concurrency.limit", circuit, c -> c.limit)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("webhook.concurrency.in_flight", circuit, c -> c.inFlight)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return circuit;
+    }
+
+    private static final class TimedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Consumer<Boolean> onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean bodyFailed;
+
+        private TimedResponse(ClientHttpResponse delegate, Consumer<Boolean> onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(delegate.getBody()) {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        return super.read();
+                    } catch (IOException ex) {
+                        bodyFailed = true;
+                        throw ex;
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    try {
+                        return super.read(b, off, len);
+                    } catch (IOException ex) {
+                        bodyFailed = true;
+                        throw ex;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                delegate.close();
+            } finally {
+                onClose.accept(bodyFailed);
+            }
+        }
+    }
+
+    private final class EndpointCircuit {
+
+        private final String endpoint;
+        private final Counter rejectedOpen;
+        private final Counter rejectedLimit;
+        private final boolean[] failures = new boolean[settings.windowSize()];
+        private final boolean[] slowCalls = new boolean[settings.windowSize()];
+        private int recorded;
+        private int next;
+        private volatile State state = State.CLOSED;
+        private long openedAt;
+        private int probesStarted;
+        private int probesSucceeded;
+        private volatile double limit = settings.initialLimit();
+        private volatile int inFlight;
+
+        private EndpointCircuit(String endpoint, Counter rejectedOpen, Counter rejectedLimit) {
+            this.endpoint = endpoint;
+            this.rejectedOpen = rejectedOpen;
+            this.rejectedLimit = rejectedLimit;
+        }
+
+        synchronized void acquire() {
+            long now = nanoClock.getAsLong();
+            if (state == State.OPEN) {
+                long remaining = settings.openDuration().toNanos() - (now - openedAt);
+                if (remaining > 0) {
+                    rejectedOpen.increment();
+                    throw new WebhookCallNotPermittedException(
+                            "Obwód webhooka " + endpoint + " jest otwarty", Duration.ofNanos(remaining));
+                }
+                state = State.HALF_OPEN;
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= settings.halfOpenProbes()) {
+                    rejectedOpen.increment();
+                    throw new WebhookCallNotPermittedException(
+                            "Obwód webhooka " + endpoint + " jest w trakcie sprawdzania", settings.openDuration());
+                }
+                probesStarted++;
+            } else if (inFlight >= (int) limit) {
+                rejectedLimit.increment();
+                throw new WebhookCallNotPermittedException(
+                        "Przekroczono limit współbieżności webhooka " + endpoint, settings.slowCallDuration());
+            }
+            inFlight++;
+        }
+
+        synchronized void release() {
+            inFlight--;
+            if (state == State.HALF_OPEN) {
+                probesStarted--;
+            }
+        }
+
+        synchronized void onResult(long durationNanos, boolean failure) {
+            inFlight--;
+            boolean slow = durationNanos > settings.slowCallDuration().toNanos();
+
+            if (failure || slow) {
+                limit = Math.max(settings.minLimit(), limit * settings.backoffRatio());
+            } else {
+                limit = Math.min(settings.maxLimit(), limit + 1.0 / limit);
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (failure || slow) {
+                    open();
+                } else if (++probesSucceeded >= settings.halfOpenProbes()) {
+                    close();
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+
+            failures[next] = failure;
+            slowCalls[next] = slow;
+            next = (next + 1) % failures.length;
+            recorded = Math.min(recorded + 1, failures.length);
+            if (recorded >= settings.minimumCalls()
+                    && (rate(failures) >= settings.failureRateThreshold()
+                            || rate(slowCalls) >= settings.slowCallRateThreshold())) {
+                open();
+            }
+        }
+
+        private double rate(boolean[] outcomes) {
+            int count = 0;
+            for (int i = 0; i < recorded; i++) {
+                if (outcomes[i]) {
+                    count++;
+                }
+            }
+            return count * 100.0 / recorded;
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            recorded = 0;
+            next = 0;
+        }
+    }
+}
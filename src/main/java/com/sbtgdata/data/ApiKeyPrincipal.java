@@ -0,0 +1,4 @@
+package com.sbtgdata.data;
+
+public record ApiKeyPrincipal(String userId, String email) {
+}
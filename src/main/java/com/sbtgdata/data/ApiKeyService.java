@@ -0,0 +1,154 @@
+package com.sbtgdata.data;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class ApiKeyService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String LEGACY_KEY_FIELD = "API_KEY";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Value("${api-key.hmac-secret}")
+    private String hmacSecret;
+
+    @Value("${api-key.cache.max-size:100000}")
+    private int maxCacheSize = 100000;
+
+    @Value("${api-key.cache.ttl:1m}")
+    private Duration ttl = Duration.ofMinutes(1);
+
+    @Value("${api-key.cache.negative-ttl:30s}")
+    private Duration negativeTtl = Duration.ofSeconds(30);
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private ThreadLocal<Mac> macs;
+
+    @PostConstruct
+    public void initMac() {
+        if (hmacSecret == null || hmacSecret.isBlank()) {
+            throw new IllegalStateException("Brak skonfigurowanego api-key.hmac-secret");
+        }
+        SecretKeySpec key = new SecretKeySpec(hmacSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public String hash(String apiKey) {
+        byte[] digest = macs.get().doFinal(apiKey.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    public Optional<ApiKeyPrincipal> resolve(String apiKey) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return Optional.empty();
+        }
+
+        String hash = hash(apiKey);
+        long now = System.nanoTime();
+        CacheEntry cached = cache.get(hash);
+        if (cached != null && now - cached.expiresAt() < 0) {
+            return Optional.ofNullable(cached.principal());
+        }
+
+        long generation = invalidations.get();
+        ApiKeyPrincipal principal = userRepository.findByApiKeyHash(hash)
+                .map(user -> new ApiKeyPrincipal(user.getId(), user.getEmail()))
+                .orElse(null);
+        Duration entryTtl = principal != null ? ttl : negativeTtl;
+        if (cache.size() >= maxCacheSize) {
+            evict(now);
+        }
+        CacheEntry entry = new CacheEntry(principal, now + entryTtl.toNanos());
+        cache.put(hash, entry);
+        if (invalidations.get() != generation) {
+            cache.remove(hash, entry);
+        }
+        return Optional.ofNullable(principal);
+    }
+
+    public void invalidate(String apiKey) {
+        if (apiKey != null && !apiKey.isBlank()) {
+            invalidateHash(hash(apiKey));
+        }
+    }
+
+    public void invalidateHash(String apiKeyHash) {
+        if (apiKeyHash != null && !apiKeyHash.isBlank()) {
+            invalidations.incrementAndGet();
+            cache.remove(apiKeyHash);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateStoredKeys() {
+        String collection = mongoTemplate.getCollectionName(User.class);
+        Query query = Query.query(Criteria.where(LEGACY_KEY_FIELD).exists(true));
+        query.fields().include(LEGACY_KEY_FIELD);
+        for (Document user : mongoTemplate.find(query, Document.class, collection)) {
+            String apiKey = user.getString(LEGACY_KEY_FIELD);
+            String userId = String.valueOf(user.get("_id"));
+            if (apiKey != null) {
+                // niedostarczone powiadomienie o rejestracji musi dostać klucz, zanim zniknie z konta
+                outboxService.setPendingPayloadField(OutboxEvent.USER_CREATED, userId, LEGACY_KEY_FIELD, apiKey);
+            }
+            Update update = new Update().unset(LEGACY_KEY_FIELD);
+            if (apiKey != null) {
+                update.set("apiKeyHash", hash(apiKey));
+            }
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(user.get("_id"))
+                    .and(LEGACY_KEY_FIELD).is(apiKey)), update, collection);
+        }
+    }
+
+    private void evict(long now) {
+        cache.values().removeIf(entry -> now - entry.expiresAt() >= 0);
+        Iterator<String> keys = cache.keySet().iterator();
+        int toRemove = cache.size() - maxCacheSize * 9 / 10;
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record CacheEntry(ApiKeyPrincipal principal, long expiresAt) {
+    }
+}
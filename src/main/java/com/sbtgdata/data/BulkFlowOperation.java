@@ -0,0 +1,5 @@
+package com.sbtgdata.data;
+
+public enum BulkFlowOperation {
+    START, STOP, DELETE
+}
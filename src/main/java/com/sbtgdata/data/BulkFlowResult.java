@@ -0,0 +1,26 @@
+package com.sbtgdata.data;
+
+public class BulkFlowResult {
+
+    private final String flowId;
+    private final boolean success;
+    private final String message;
+
+    public BulkFlowResult(String flowId, boolean success, String message) {
+        this.flowId = flowId;
+        this.success = success;
+        this.message = message;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
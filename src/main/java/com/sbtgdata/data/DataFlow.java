@@ -2,31 +2,53 @@ package com.sbtgdata.data;
 
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Document(collection = "flows")
+@CompoundIndex(name = "user_id_status", def = "{ 'user_id': 1, 'status': 1 }")
 public class DataFlow {
 
+    public static final String STATUS_STOPPED = "STOPPED";
+    public static final String STATUS_STARTING = "STARTING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_STOPPING = "STOPPING";
+    public static final String STATUS_DELETING = "DELETING";
+
     @Id
     private String id;
 
+    @Version
+    private Long version;
+
     private String name;
+
+    // dokładne wyszukiwanie po właścicielu (findByOwnerEmail, operacje zbiorcze)
+    @Indexed
     private String ownerEmail;
 
+    @Indexed
+    private String ownerEmailLower;
+
     @Field("user_id")
     private ObjectId userId;
 
     private String function;
     private java.util.List<String> packages;
     private String status;
+    private Integer ingestRateLimit;
+    private Integer ingestBurst;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
     public DataFlow() {
-        this.status = "RUNNING";
+        this.status = STATUS_STARTING;
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
     }
@@ -39,6 +61,18 @@ public class DataFlow {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public boolean isActive() {
+        return !STATUS_STOPPED.equals(status);
+    }
+
     public String getName() {
         return name;
     }
@@ -53,6 +87,15 @@ public class DataFlow {
 
     public void setOwnerEmail(String ownerEmail) {
         this.ownerEmail = ownerEmail;
+        this.ownerEmailLower = lowerEmail(ownerEmail);
+    }
+
+    static String lowerEmail(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    public String getOwnerEmailLower() {
+        return ownerEmailLower;
     }
 
     public String getStatus() {
@@ -112,4 +155,20 @@ public class DataFlow {
     public void setPackages(java.util.List<String> packages) {
         this.packages = packages;
     }
+
+    public Integer getIngestRateLimit() {
+        return ingestRateLimit;
+    }
+
+    public void setIngestRateLimit(Integer ingestRateLimit) {
+        this.ingestRateLimit = ingestRateLimit;
+    }
+
+    public Integer getIngestBurst() {
+        return ingestBurst;
+    }
+
+    public void setIngestBurst(Integer ingestBurst) {
+        this.ingestBurst = ingestBurst;
+    }
 }
@@ -1,10 +1,14 @@
 package com.sbtgdata.data;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import java.util.List;
 
 public interface DataFlowRepository extends MongoRepository<DataFlow, String> {
     List<DataFlow> findByOwnerEmail(String ownerEmail);
 
     List<DataFlow> findByUserId(org.bson.types.ObjectId userId);
+
+    @Query(value = "{ 'user_id': ?0 }", fields = "{ '_id': 1 }")
+    List<DataFlow> findIdsByUserId(org.bson.types.ObjectId userId);
 }
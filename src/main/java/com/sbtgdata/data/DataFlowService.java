@@ -2,7 +2,23 @@ package com.sbtgdata.data;
 
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -11,15 +27,36 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import com.sbtgdata.config.ErrorEventPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class DataFlowService {
+public class DataFlowService implements OutboxEventHandler {
 
     @Autowired
     private DataFlowRepository dataFlowRepository;
@@ -27,6 +64,9 @@ public class DataFlowService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Autowired
     private RestTemplate restTemplate;
 
@@ -36,12 +76,39 @@ public class DataFlowService {
     @Autowired
     private FlowErrorService flowErrorService;
 
+    @Autowired
+    private FlowDataService flowDataService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    @Qualifier("webhookExecutor")
+    private Executor webhookExecutor;
+
+    @Value("${flows.bulk.parallelism:8}")
+    private int bulkParallelism = 8;
+
+    private ExecutorService bulkExecutor;
+
     @Value("${external.flow.create.webhook.url:}")
     private String flowCreateWebhookEndpoint;
 
     @Value("${external.flow.create.webhook.url2:}")
     private String flowCreateWebhookEndpoint2;
 
+    @Value("#{'${external.flow.create.webhook.extra-urls:}'.split(',')}")
+    private List<String> flowCreateWebhookExtraEndpoints = new ArrayList<>();
+
+    @Value("${external.flow.create.webhook.deadline:15s}")
+    private Duration flowCreateWebhookDeadline = Duration.ofSeconds(15);
+
+    @Value("${external.flow.create.webhook.cancel-grace:15s}")
+    private Duration flowCreateWebhookCancelGrace = Duration.ofSeconds(15);
+
     @Value("${external.flow.delete.webhook.url:}")
     private String flowDeleteWebhookEndpoint;
 
@@ -59,6 +126,26 @@ public class DataFlowService {
         return dataFlowRepository.findAll();
     }
 
+    public List<DataFlowSummary> findSummariesByOwnerEmail(String ownerEmail) {
+        return findSummaries(Criteria.where("ownerEmail").is(ownerEmail), Pageable.unpaged(Sort.by("createdAt")));
+    }
+
+    public List<DataFlowSummary> findSummaryPage(String ownerEmailFilter, Pageable pageable) {
+        return findSummaries(ownerEmailCriteria(ownerEmailFilter), pageable);
+    }
+
+    public long count(String ownerEmailFilter) {
+        return mongoTemplate.count(ownerEmailQuery(ownerEmailFilter), DataFlow.class);
+    }
+
+    public List<String> findIds(String ownerEmailFilter) {
+        Query query = ownerEmailQuery(ownerEmailFilter);
+        query.fields().include("id");
+        return mongoTemplate.find(query, DataFlow.class).stream()
+                .map(DataFlow::getId)
+                .collect(Collectors.toList());
+    }
+
     public Optional<DataFlow> findById(String id) {
         return dataFlowRepository.findById(id);
     }
@@ -67,20 +154,34 @@ public class DataFlowService {
         boolean isNew = dataFlow.getId() == null;
 
         dataFlow.setUpdatedAt(LocalDateTime.now());
+        if (isNew) {
+            dataFlow.setStatus(DataFlow.STATUS_STARTING);
+        }
 
         if (dataFlow.getUserId() == null && dataFlow.getOwnerEmail() != null) {
             dataFlow.setUserIdFromString(resolveOwnerId(dataFlow.getOwnerEmail()));
         }
 
-        DataFlow saved = dataFlowRepository.save(dataFlow);
+        if (!isNew && dataFlow.getVersion() == null) {
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("id").is(dataFlow.getId()).and("version").exists(false)),
+                    new Update().set("version", 0L), DataFlow.class);
+            dataFlow.setVersion(0L);
+        }
+
+        DataFlow saved;
+        try {
+            saved = dataFlowRepository.save(dataFlow);
+        } catch (OptimisticLockingFailureException ex) {
+            throw new IllegalArgumentException(
+                    "Przepływ został w międzyczasie zmieniony, odśwież widok i spróbuj ponownie");
+        }
 
         if (isNew) {
             try {
-                notifyExternalOnCreate(saved);
+                outboxService.enqueue(OutboxEvent.FLOW_CREATED, saved.getId(), createPayload(saved));
             } catch (RuntimeException ex) {
-                if (saved.getId() != null) {
-                    dataFlowRepository.deleteById(saved.getId());
-                }
+                dataFlowRepository.deleteById(saved.getId());
                 errorEventPublisher.publish(null, saved.getId(), saved.getUserIdAsString(), ex.getMessage());
                 throw new IllegalArgumentException("Zapis przepływu nieudany: " + ex.getMessage());
             }
@@ -90,105 +191,379 @@ public class DataFlowService {
     }
 
     public void delete(DataFlow dataFlow) {
+        deleteById(dataFlow.getId());
+    }
+
+    public void markForDeletion(DataFlow dataFlow) {
+        Query claim = Query.query(Criteria.where("id").is(dataFlow.getId())
+                .and("status").ne(DataFlow.STATUS_DELETING));
+        Update update = new Update()
+                .set("status", DataFlow.STATUS_DELETING)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        DataFlow previous = mongoTemplate.findAndModify(claim, update, DataFlow.class);
+        if (previous == null) {
+            return;
+        }
+        eventPublisher.publishEvent(new FlowChangedEvent(previous.getId(), true));
+
+        OutboxEvent stopEvent = null;
         try {
-            notifyExternalOnDelete(dataFlow);
+            if (previous.isActive()) {
+                stopEvent = outboxService.enqueue(OutboxEvent.FLOW_STOPPED, previous.getId(),
+                        Map.of("flow_id", previous.getId()));
+            }
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("user_id", resolveUserId(previous));
+            payload.put("flow_id", previous.getId());
+            outboxService.enqueue(OutboxEvent.FLOW_DELETED, previous.getId(), payload);
         } catch (RuntimeException ex) {
-            errorEventPublisher.publish(null, dataFlow.getId(), dataFlow.getUserIdAsString(), ex.getMessage());
-            throw new IllegalArgumentException("Usunięcie przepływu nieudane: " + ex.getMessage());
+            if (stopEvent != null) {
+                outboxService.discard(stopEvent);
+            }
+            transition(previous.getId(), List.of(DataFlow.STATUS_DELETING), previous.getStatus());
+            throw ex;
         }
-        flowErrorService.deleteAllErrorsByFlowId(dataFlow.getId());
-        dataFlowRepository.delete(dataFlow);
+    }
+
+    public void deleteAllByUserId(String userId) {
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is(new ObjectId(userId))), DataFlow.class);
     }
 
     public void deleteById(String id) {
-        Optional<DataFlow> flowOpt = dataFlowRepository.findById(id);
-        if (flowOpt.isPresent()) {
-            delete(flowOpt.get());
+        Query claim = Query.query(Criteria.where("id").is(id).and("status").ne(DataFlow.STATUS_DELETING));
+        Update update = new Update()
+                .set("status", DataFlow.STATUS_DELETING)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        DataFlow previous = mongoTemplate.findAndModify(claim, update, DataFlow.class);
+        if (previous == null && !dataFlowRepository.existsById(id)) {
+            return;
         }
+
+        if (previous != null) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("user_id", resolveUserId(previous));
+            payload.put("flow_id", id);
+            try {
+                outboxService.enqueue(OutboxEvent.FLOW_DELETED, id, payload);
+            } catch (RuntimeException ex) {
+                transition(id, List.of(DataFlow.STATUS_DELETING), previous.getStatus());
+                errorEventPublisher.publish(null, id, previous.getUserIdAsString(), ex.getMessage());
+                throw new IllegalArgumentException("Usunięcie przepływu nieudane: " + ex.getMessage());
+            }
+        }
+        eventPublisher.publishEvent(new FlowChangedEvent(id, true));
+
+        try {
+            flowErrorService.deleteAllErrorsByFlowId(id);
+            flowDataService.deleteByFlowIds(List.of(id));
+            dataFlowRepository.deleteById(id);
+        } catch (RuntimeException ex) {
+            errorEventPublisher.publish(null, id, previous != null ? previous.getUserIdAsString() : null,
+                    ex.getMessage());
+            throw new IllegalArgumentException("Usunięcie przepływu nieudane: " + ex.getMessage());
+        }
+    }
+
+    public boolean startFlow(String flowId) {
+        return requestTransition(flowId, List.of(DataFlow.STATUS_STOPPED, DataFlow.STATUS_STOPPING),
+                DataFlow.STATUS_STARTING, List.of(DataFlow.STATUS_STARTING, DataFlow.STATUS_RUNNING),
+                OutboxEvent.FLOW_STARTED);
+    }
+
+    public boolean stopFlow(String flowId) {
+        return requestTransition(flowId, List.of(DataFlow.STATUS_RUNNING, DataFlow.STATUS_STARTING),
+                DataFlow.STATUS_STOPPING, List.of(DataFlow.STATUS_STOPPING, DataFlow.STATUS_STOPPED),
+                OutboxEvent.FLOW_STOPPED);
     }
 
-    public void startFlow(String flowId) {
-        Optional<DataFlow> flowOpt = dataFlowRepository.findById(flowId);
-        if (flowOpt.isEmpty()) {
-            throw new IllegalArgumentException("Przepływ nie istnieje");
+    private boolean requestTransition(String flowId, List<String> fromStatuses, String toStatus,
+            List<String> settledStatuses, String eventType) {
+        DataFlow previous = transition(flowId, fromStatuses, toStatus);
+        if (previous == null) {
+            String current = dataFlowRepository.findById(flowId)
+                    .map(DataFlow::getStatus)
+                    .orElseThrow(() -> new IllegalArgumentException("Przepływ nie istnieje"));
+            if (settledStatuses.contains(current)) {
+                return false;
+            }
+            throw new IllegalStateException("Przepływ zmienił status na " + current + ", spróbuj ponownie");
         }
 
-        DataFlow flow = flowOpt.get();
+        try {
+            outboxService.enqueue(eventType, flowId, Map.of("flow_id", flowId));
+        } catch (RuntimeException ex) {
+            transition(flowId, List.of(toStatus), previous.getStatus());
+            throw ex;
+        }
+        return true;
+    }
 
-        notifyExternalOnStart(flow);
+    public void updateIngestLimits(String flowId, Integer rateLimit, Integer burst) {
+        if (rateLimit != null && rateLimit <= 0 || burst != null && burst <= 0) {
+            throw new IllegalArgumentException("Limity muszą być dodatnie");
+        }
+        Update update = new Update()
+                .set("ingestRateLimit", rateLimit)
+                .set("ingestBurst", burst)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(flowId)), update, DataFlow.class);
+        eventPublisher.publishEvent(new FlowChangedEvent(flowId, false));
+    }
+
+    private DataFlow transition(String flowId, List<String> fromStatuses, String toStatus) {
+        Query query = Query.query(Criteria.where("id").is(flowId).and("status").in(fromStatuses));
+        query.fields().include("status");
+        Update update = new Update()
+                .set("status", toStatus)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("version", 1);
+        DataFlow previous = mongoTemplate.findAndModify(query, update, DataFlow.class);
+        if (previous != null) {
+            eventPublisher.publishEvent(new FlowChangedEvent(flowId, false));
+        }
+        return previous;
+    }
 
-        flow.setStatus("RUNNING");
-        flow.setUpdatedAt(LocalDateTime.now());
-        dataFlowRepository.save(flow);
+    public CompletableFuture<List<BulkFlowResult>> runBulk(BulkFlowOperation operation, Collection<String> flowIds,
+            String ownerEmail, Consumer<BulkFlowResult> onResult) {
+        Set<String> permitted = ownerEmail == null ? new HashSet<>(flowIds) : findOwnedIds(flowIds, ownerEmail);
+
+        List<CompletableFuture<BulkFlowResult>> items = new ArrayList<>();
+        for (String flowId : flowIds) {
+            CompletableFuture<BulkFlowResult> item = permitted.contains(flowId)
+                    ? CompletableFuture.supplyAsync(() -> runBulkItem(operation, flowId), bulkExecutor)
+                    : CompletableFuture.completedFuture(new BulkFlowResult(flowId, false, "Brak dostępu do przepływu"));
+            items.add(item.thenApply(result -> {
+                onResult.accept(result);
+                return result;
+            }));
+        }
+
+        return CompletableFuture.allOf(items.toArray(new CompletableFuture[0]))
+                .thenApply(done -> items.stream().map(CompletableFuture::join).collect(Collectors.toList()));
     }
 
-    public void stopFlow(String flowId) {
-        Optional<DataFlow> flowOpt = dataFlowRepository.findById(flowId);
-        if (flowOpt.isEmpty()) {
-            throw new IllegalArgumentException("Przepływ nie istnieje");
+    private BulkFlowResult runBulkItem(BulkFlowOperation operation, String flowId) {
+        try {
+            return switch (operation) {
+                case START -> new BulkFlowResult(flowId, true,
+                        startFlow(flowId) ? "Uruchamianie" : "Już uruchomiony");
+                case STOP -> new BulkFlowResult(flowId, true,
+                        stopFlow(flowId) ? "Zatrzymywanie" : "Już zatrzymany");
+                case DELETE -> {
+                    stopFlow(flowId);
+                    deleteById(flowId);
+                    yield new BulkFlowResult(flowId, true, "Usunięty");
+                }
+            };
+        } catch (RuntimeException ex) {
+            return new BulkFlowResult(flowId, false, ex.getMessage());
         }
+    }
+
+    private Set<String> findOwnedIds(Collection<String> flowIds, String ownerEmail) {
+        Query query = Query.query(Criteria.where("id").in(flowIds).and("ownerEmail").is(ownerEmail));
+        query.fields().include("id");
+        return mongoTemplate.find(query, DataFlow.class).stream()
+                .map(DataFlow::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @PostConstruct
+    public void startBulkExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        bulkExecutor = Executors.newFixedThreadPool(bulkParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "flow-bulk-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-        DataFlow flow = flowOpt.get();
+    @PreDestroy
+    public void shutdownBulkExecutor() {
+        bulkExecutor.shutdown();
+    }
 
-        notifyExternalOnStop(flow);
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOwnerEmailLower() {
+        Query query = Query.query(Criteria.where("ownerEmailLower").exists(false).and("ownerEmail").exists(true));
+        query.fields().include("id", "ownerEmail");
+        try (Stream<DataFlow> flows = mongoTemplate.stream(query, DataFlow.class)) {
+            flows.forEach(flow -> mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("id").is(flow.getId()).and("ownerEmail").is(flow.getOwnerEmail())),
+                    new Update().set("ownerEmailLower", flow.getOwnerEmailLower()), DataFlow.class));
+        }
+    }
 
-        flow.setStatus("STOPPED");
-        flow.setUpdatedAt(LocalDateTime.now());
-        dataFlowRepository.save(flow);
+    @Override
+    public Set<String> getEventTypes() {
+        return Set.of(OutboxEvent.FLOW_CREATED, OutboxEvent.FLOW_DELETED, OutboxEvent.FLOW_STARTED,
+                OutboxEvent.FLOW_STOPPED);
     }
 
-    private void notifyExternalOnCreate(DataFlow flow) {
-        String userId = flow.getUserIdAsString() != null ? flow.getUserIdAsString()
+    @Override
+    public void deliver(OutboxEvent event) {
+        switch (event.getType()) {
+            case OutboxEvent.FLOW_CREATED -> {
+                notifyExternalOnCreate(event.getPayload());
+                transition(event.getAggregateId(), List.of(DataFlow.STATUS_STARTING), DataFlow.STATUS_RUNNING);
+            }
+            case OutboxEvent.FLOW_DELETED -> notifyExternalOnDelete(event.getPayload());
+            case OutboxEvent.FLOW_STARTED -> {
+                notifyExternalOnStart(event.getPayload());
+                transition(event.getAggregateId(), List.of(DataFlow.STATUS_STARTING), DataFlow.STATUS_RUNNING);
+            }
+            case OutboxEvent.FLOW_STOPPED -> {
+                notifyExternalOnStop(event.getPayload());
+                transition(event.getAggregateId(), List.of(DataFlow.STATUS_STOPPING), DataFlow.STATUS_STOPPED);
+            }
+            default -> throw new IllegalArgumentException("Nieobsługiwane zdarzenie: " + event.getType());
+        }
+    }
+
+    @Override
+    public void onDeliveryFailed(OutboxEvent event, RuntimeException cause) {
+        String flowId = event.getAggregateId();
+        switch (event.getType()) {
+            case OutboxEvent.FLOW_CREATED -> {
+                eventPublisher.publishEvent(new FlowChangedEvent(flowId, true));
+                flowErrorService.deleteAllErrorsByFlowId(flowId);
+                flowDataService.deleteByFlowIds(List.of(flowId));
+                dataFlowRepository.deleteById(flowId);
+                errorEventPublisher.publish(event.getId(), flowId, String.valueOf(event.getPayload().get("user_id")),
+                        "Zapis przepływu nieudany, przepływ usunięty: " + cause.getMessage());
+            }
+            case OutboxEvent.FLOW_STARTED -> {
+                if (transition(flowId, List.of(DataFlow.STATUS_STARTING), DataFlow.STATUS_STOPPED) != null) {
+                    flowErrorService.recordError(flowId, "Nie udało się uruchomić przepływu: " + cause.getMessage());
+                }
+            }
+            case OutboxEvent.FLOW_STOPPED -> {
+                if (transition(flowId, List.of(DataFlow.STATUS_STOPPING), DataFlow.STATUS_RUNNING) != null) {
+                    flowErrorService.recordError(flowId, "Nie udało się zatrzymać przepływu: " + cause.getMessage());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private Map<String, Object> createPayload(DataFlow flow) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("user_id", resolveUserId(flow));
+        payload.put("flow_id", flow.getId());
+        payload.put("function", flow.getFunction());
+        payload.put("packages", flow.getPackages());
+        return payload;
+    }
+
+    private String resolveUserId(DataFlow flow) {
+        return flow.getUserIdAsString() != null ? flow.getUserIdAsString()
                 : resolveOwnerId(flow.getOwnerEmail());
+    }
 
-        if (flowCreateWebhookEndpoint != null && !flowCreateWebhookEndpoint.isBlank()) {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("user_id", userId);
-            payload.put("flow_id", flow.getId());
-            payload.put("function", flow.getFunction());
-            payload.put("packages", flow.getPackages());
+    private void notifyExternalOnCreate(Map<String, Object> payloadWithUser) {
+        Map<String, Object> payload = new HashMap<>(payloadWithUser);
+        payload.remove("user_id");
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
+        List<WebhookCall> calls = new ArrayList<>();
+        calls.add(postCreateWebhook(flowCreateWebhookEndpoint, payloadWithUser, 1));
+        calls.add(postCreateWebhook(flowCreateWebhookEndpoint2, payload, 2));
+        for (int i = 0; i < flowCreateWebhookExtraEndpoints.size(); i++) {
+            calls.add(postCreateWebhook(flowCreateWebhookExtraEndpoints.get(i).trim(), payloadWithUser, i + 3));
+        }
 
-            ResponseEntity<String> response = restTemplate.postForEntity(flowCreateWebhookEndpoint, request,
-                    String.class);
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                throw new IllegalStateException("Endpoint 1 zwrócił status " + response.getStatusCode());
+        List<WebhookCall> submitted = new ArrayList<>(calls.size());
+        try {
+            for (WebhookCall call : calls) {
+                if (!call.settled.isDone()) {
+                    webhookExecutor.execute(call);
+                }
+                submitted.add(call);
             }
+        } catch (RuntimeException ex) {
+            cancelAndAwait(submitted);
+            throw new IllegalStateException("Nie udało się uruchomić wywołań webhooków", ex);
         }
+        awaitAll(calls, flowCreateWebhookDeadline);
+    }
 
-        if (flowCreateWebhookEndpoint2 != null && !flowCreateWebhookEndpoint2.isBlank()) {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("flow_id", flow.getId());
-            payload.put("function", flow.getFunction());
-            payload.put("packages", flow.getPackages());
+    private WebhookCall postCreateWebhook(String endpoint, Map<String, Object> payload, int index) {
+        if (endpoint == null || endpoint.isBlank()) {
+            return WebhookCall.completed();
+        }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
 
-            ResponseEntity<String> response = restTemplate.postForEntity(flowCreateWebhookEndpoint2, request,
-                    String.class);
+        WebhookCall call = new WebhookCall(() -> {
+            ResponseEntity<String> response = restTemplate.postForEntity(endpoint, request, String.class);
             if (!response.getStatusCode().is2xxSuccessful()) {
-                throw new IllegalStateException("Endpoint 2 zwrócił status " + response.getStatusCode());
+                throw new IllegalStateException("Endpoint " + index + " zwrócił status " + response.getStatusCode());
+            }
+        });
+        return call;
+    }
+
+    private void awaitAll(List<WebhookCall> calls, Duration deadline) {
+        CompletableFuture<Void> firstFailureOrAll = new CompletableFuture<>();
+        for (WebhookCall call : calls) {
+            call.result.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    firstFailureOrAll.completeExceptionally(unwrap(ex));
+                }
+            });
+        }
+        CompletableFuture.allOf(calls.stream().map(call -> call.result).toArray(CompletableFuture[]::new))
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        firstFailureOrAll.completeExceptionally(unwrap(ex));
+                    } else {
+                        firstFailureOrAll.complete(null);
+                    }
+                });
+
+        try {
+            firstFailureOrAll.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            cancelAndAwait(calls);
+            throw new IllegalStateException("Przekroczono czas oczekiwania na odpowiedź webhooków");
+        } catch (ExecutionException ex) {
+            cancelAndAwait(calls);
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            calls.forEach(WebhookCall::cancel);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Przerwano oczekiwanie na odpowiedź webhooków");
+        }
+    }
+
+    private void cancelAndAwait(List<WebhookCall> calls) {
+        calls.forEach(WebhookCall::cancel);
+        CompletableFuture<Void> settled = CompletableFuture.allOf(
+                calls.stream().map(call -> call.settled).toArray(CompletableFuture[]::new));
+        try {
+            settled.get(flowCreateWebhookCancelGrace.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ex) {
+            throw new IllegalStateException("Nie udało się przerwać trwających wywołań webhooków");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Przerwano oczekiwanie na odpowiedź webhooków");
         }
     }
 
-    private void notifyExternalOnDelete(DataFlow flow) {
+    private void notifyExternalOnDelete(Map<String, Object> payload) {
         if (flowDeleteWebhookEndpoint == null || flowDeleteWebhookEndpoint.isBlank()) {
             return;
         }
 
-        String userId = flow.getUserIdAsString() != null ? flow.getUserIdAsString()
-                : resolveOwnerId(flow.getOwnerEmail());
-
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("user_id", userId);
-        payload.put("flow_id", flow.getId());
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
@@ -196,14 +571,11 @@ public class DataFlowService {
         restTemplate.postForEntity(flowDeleteWebhookEndpoint, request, String.class);
     }
 
-    private void notifyExternalOnStart(DataFlow flow) {
+    private void notifyExternalOnStart(Map<String, Object> payload) {
         if (flowStartWebhookEndpoint == null || flowStartWebhookEndpoint.isBlank()) {
             return;
         }
 
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("flow_id", flow.getId());
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
@@ -220,14 +592,11 @@ public class DataFlowService {
         }
     }
 
-    private void notifyExternalOnStop(DataFlow flow) {
+    private void notifyExternalOnStop(Map<String, Object> payload) {
         if (flowStopWebhookEndpoint == null || flowStopWebhookEndpoint.isBlank()) {
             return;
         }
 
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("flow_id", flow.getId());
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
@@ -241,9 +610,99 @@ public class DataFlowService {
         }
     }
 
+    private List<DataFlowSummary> findSummaries(Criteria criteria, Pageable pageable) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(criteria));
+        operations.add(Aggregation.sort(pageable.getSort().and(Sort.by("_id"))));
+        if (pageable.isPaged()) {
+            operations.add(Aggregation.skip(pageable.getOffset()));
+            operations.add(Aggregation.limit(pageable.getPageSize()));
+        }
+        operations.add(Aggregation.project("name", "ownerEmail", "status")
+                .and(ComparisonOperators.valueOf(ArrayOperators.Size.lengthOfArray(
+                        ConditionalOperators.ifNull("packages").then(Collections.emptyList())))
+                        .greaterThanValue(0))
+                .as("hasPackages"));
+
+        return mongoTemplate.aggregate(Aggregation.newAggregation(operations), "flows", DataFlowSummary.class)
+                .getMappedResults();
+    }
+
+    private Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private Query ownerEmailQuery(String ownerEmailFilter) {
+        return Query.query(ownerEmailCriteria(ownerEmailFilter));
+    }
+
+    private Criteria ownerEmailCriteria(String ownerEmailFilter) {
+        if (ownerEmailFilter == null || ownerEmailFilter.isBlank()) {
+            return new Criteria();
+        }
+        String prefix = Pattern.quote(DataFlow.lowerEmail(ownerEmailFilter));
+        return Criteria.where("ownerEmailLower").regex("^" + prefix);
+    }
+
     private String resolveOwnerId(String ownerEmail) {
         return userRepository.findByEmail(ownerEmail)
                 .map(User::getId)
                 .orElse(ownerEmail);
     }
+
+    private static final class WebhookCall implements Runnable {
+
+        private final Runnable body;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> settled = new CompletableFuture<>();
+        private Thread runner;
+        private boolean cancelled;
+
+        private WebhookCall(Runnable body) {
+            this.body = body;
+        }
+
+        private static WebhookCall completed() {
+            WebhookCall call = new WebhookCall(() -> {
+            });
+            call.result.complete(null);
+            call.settled.complete(null);
+            return call;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                body.run();
+                result.complete(null);
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    Thread.interrupted();
+                }
+                settled.complete(null);
+            }
+        }
+
+        private synchronized void cancel() {
+            if (settled.isDone() || cancelled) {
+                return;
+            }
+            cancelled = true;
+            result.cancel(false);
+            if (runner != null) {
+                runner.interrupt();
+            } else {
+                settled.complete(null);
+            }
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.annotation.Id;
+
+public class DataFlowSummary {
+
+    @Id
+    private String id;
+
+    private String name;
+    private String ownerEmail;
+    private String status;
+    private boolean hasPackages;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getOwnerEmail() {
+        return ownerEmail;
+    }
+
+    public void setOwnerEmail(String ownerEmail) {
+        this.ownerEmail = ownerEmail;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isActive() {
+        return !DataFlow.STATUS_STOPPED.equals(status);
+    }
+
+    public boolean hasPackages() {
+        return hasPackages;
+    }
+
+    public void setHasPackages(boolean hasPackages) {
+        this.hasPackages = hasPackages;
+    }
+}
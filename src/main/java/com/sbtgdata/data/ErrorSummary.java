@@ -0,0 +1,53 @@
+package com.sbtgdata.data;
+
+import java.time.LocalDateTime;
+
+public class ErrorSummary {
+
+    private String message;
+    private long count;
+    private LocalDateTime firstSeen;
+    private LocalDateTime lastSeen;
+
+    public ErrorSummary() {
+    }
+
+    public ErrorSummary(String message, long count, LocalDateTime firstSeen, LocalDateTime lastSeen) {
+        this.message = message;
+        this.count = count;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public LocalDateTime getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(LocalDateTime firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(LocalDateTime lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+}
@@ -0,0 +1,20 @@
+package com.sbtgdata.data;
+
+public class FlowChangedEvent {
+
+    private final String flowId;
+    private final boolean deleted;
+
+    public FlowChangedEvent(String flowId, boolean deleted) {
+        this.flowId = flowId;
+        this.deleted = deleted;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,157 @@
+package com.sbtgdata.data;
+
+import org.bson.Document;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+class FlowCsvWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final List<String> ROLLUP_SUFFIXES = List.of("_min", "_max", "_sum", "_avg");
+    private static final String EXTRA_COLUMN = "_extra";
+
+    private final Writer writer;
+    private Set<String> columns;
+    private long rowCount;
+
+    FlowCsvWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // wznowienie eksportu: kolumny z pierwszego rekordu zakresu, bez ponownego nagłówka
+    void resumeAfterHeader(FlowRecord first) {
+        columns = new LinkedHashSet<>(dataOf(first).keySet());
+    }
+
+    void resumeAfterHeader(FlowRollup first) {
+        columns = new TreeSet<>(fieldsOf(first).keySet());
+    }
+
+    void write(FlowRecord record) throws IOException {
+        Map<String, Object> data = dataOf(record);
+        if (columns == null) {
+            columns = new LinkedHashSet<>(data.keySet());
+            writer.write("ts");
+            for (String column : columns) {
+                writer.write(',');
+                writeValue(column);
+            }
+            writer.write(',' + EXTRA_COLUMN + '\n');
+        }
+
+        writer.write(record.getTs() != null ? record.getTs().toString() : "");
+        for (String column : columns) {
+            writer.write(',');
+            writeValue(data.get(column));
+        }
+        // pola spoza nagłówka trafiają do ostatniej kolumny jako JSON
+        Document extra = new Document();
+        data.forEach((name, value) -> {
+            if (!columns.contains(name)) {
+                extra.put(name, value);
+            }
+        });
+        writer.write(',');
+        writeValue(extra.isEmpty() ? null : extra);
+        writer.write('\n');
+        rowCount++;
+    }
+
+    void write(FlowRollup rollup) throws IOException {
+        Map<String, FlowRollup.FieldStats> fields = fieldsOf(rollup);
+        if (columns == null) {
+            columns = new TreeSet<>(fields.keySet());
+            writer.write("bucket,count");
+            for (String column : columns) {
+                for (String suffix : ROLLUP_SUFFIXES) {
+                    writer.write(',');
+                    writeValue(column + suffix);
+                }
+            }
+            writer.write(',' + EXTRA_COLUMN + '\n');
+        }
+
+        writer.write(rollup.getBucket() != null ? rollup.getBucket().toString() : "");
+        writer.write(',');
+        writer.write(Long.toString(rollup.getCount()));
+        for (String column : columns) {
+            FlowRollup.FieldStats stats = fields.get(column);
+            if (stats == null) {
+                writer.write(",,,,");
+                continue;
+            }
+            writer.write(',');
+            writer.write(Double.toString(stats.getMin()));
+            writer.write(',');
+            writer.write(Double.toString(stats.getMax()));
+            writer.write(',');
+            writer.write(Double.toString(stats.getSum()));
+            writer.write(',');
+            writer.write(Double.toString(stats.getAvg()));
+        }
+        Document extra = new Document();
+        fields.forEach((name, stats) -> {
+            if (!columns.contains(name)) {
+                extra.put(name, new Document("min", stats.getMin()).append("max", stats.getMax())
+                        .append("sum", stats.getSum()).append("avg", stats.getAvg()));
+            }
+        });
+        writer.write(',');
+        writeValue(extra.isEmpty() ? null : extra);
+        writer.write('\n');
+        rowCount++;
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    private static Map<String, Object> dataOf(FlowRecord record) {
+        return record.getData() != null ? record.getData() : Map.of();
+    }
+
+    private static Map<String, FlowRollup.FieldStats> fieldsOf(FlowRollup rollup) {
+        return rollup.getFields() != null ? rollup.getFields() : Map.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(Object value) throws IOException {
+        String text;
+        if (value == null) {
+            return;
+        } else if (value instanceof Map<?, ?> map) {
+            text = new Document((Map<String, Object>) map).toJson();
+        } else if (value instanceof Collection<?> collection) {
+            text = new Document("v", collection).toJson();
+            text = text.substring(text.indexOf(':') + 1, text.length() - 1).trim();
+        } else if (value instanceof Date date) {
+            text = date.toInstant().toString();
+        } else {
+            text = value.toString();
+        }
+
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,152 @@
+package com.sbtgdata.data;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class FlowDataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowDataService.class);
+
+    private static final Instant OPEN_START = Instant.EPOCH;
+    private static final Instant OPEN_END = Instant.parse("9999-12-31T23:59:59Z");
+    private static final Sort EXPORT_ORDER = Sort.by("ts", "id");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FlowRecordRepository flowRecordRepository;
+
+    @Value("${flow-data.timeseries.granularity:SECONDS}")
+    private Granularity granularity = Granularity.SECONDS;
+
+    @Value("${flow-data.expire-after:0s}")
+    private Duration expireAfter = Duration.ZERO;
+
+    @Value("${flow-data.export.batch-size:1000}")
+    private int exportBatchSize = 1000;
+
+    public void ensureCollection() {
+        Document info;
+        try {
+            info = mongoTemplate.getDb().listCollections()
+                    .filter(new Document("name", FlowRecord.COLLECTION))
+                    .first();
+            if (info == null) {
+                createCollection();
+                return;
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalStateException("Nie udało się przygotować kolekcji " + FlowRecord.COLLECTION, ex);
+        }
+        if (!"timeseries".equals(info.getString("type"))) {
+            throw new IllegalStateException("Kolekcja " + FlowRecord.COLLECTION
+                    + " istnieje jako zwykła kolekcja; należy ją przenieść do kolekcji szeregu czasowego");
+        }
+        updateExpiry(info.get("options", Document.class));
+    }
+
+    public Stream<FlowRecord> streamRange(String flowId, Instant from, Instant to, long skip) {
+        Query query = rangeQuery(flowId, from, to)
+                .with(EXPORT_ORDER)
+                .skip(skip)
+                .cursorBatchSize(exportBatchSize);
+        return mongoTemplate.stream(query, FlowRecord.class);
+    }
+
+    public RangeSnapshot snapshotRange(String flowId, Instant from, Instant to) {
+        long rows = countRange(flowId, from, to);
+        // pierwszy rekord zmienia się, gdy wygasanie usunie początek zakresu, ostatni - gdy dojdą nowe dane
+        return new RangeSnapshot(rows, rows + ":" + edgeId(flowId, from, to, EXPORT_ORDER) + ":"
+                + edgeId(flowId, from, to, EXPORT_ORDER.descending()));
+    }
+
+    public long writeCsv(String flowId, Instant from, Instant to, long skip, OutputStream out) throws IOException {
+        FlowCsvWriter csv = new FlowCsvWriter(out);
+        if (skip > 0) {
+            FlowRecord first = mongoTemplate.findOne(rangeQuery(flowId, from, to).with(EXPORT_ORDER).limit(1),
+                    FlowRecord.class);
+            if (first != null) {
+                csv.resumeAfterHeader(first);
+            }
+        }
+        try (Stream<FlowRecord> records = streamRange(flowId, from, to, skip)) {
+            Iterator<FlowRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                csv.write(iterator.next());
+            }
+        }
+        csv.flush();
+        return csv.getRowCount();
+    }
+
+    public long countRange(String flowId, Instant from, Instant to) {
+        return flowRecordRepository.countByFlowIdAndTsRange(flowId, from != null ? from : OPEN_START,
+                to != null ? to : OPEN_END);
+    }
+
+    private String edgeId(String flowId, Instant from, Instant to, Sort sort) {
+        Query query = rangeQuery(flowId, from, to).with(sort).limit(1);
+        query.fields().include("id");
+        FlowRecord record = mongoTemplate.findOne(query, FlowRecord.class);
+        return record != null ? record.getId() : "";
+    }
+
+    private Query rangeQuery(String flowId, Instant from, Instant to) {
+        return Query.query(Criteria.where("flowId").is(flowId)
+                .and("ts").gte(from != null ? from : OPEN_START).lt(to != null ? to : OPEN_END));
+    }
+
+    public void deleteByFlowIds(Collection<String> flowIds) {
+        if (!flowIds.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("flow_id").in(flowIds)), FlowRecord.COLLECTION);
+            mongoTemplate.remove(Query.query(Criteria.where("flow_id").in(flowIds)), FlowRollup.COLLECTION);
+            mongoTemplate.remove(Query.query(Criteria.where("flow_id").in(flowIds)), FlowRollupService.DIRTY_COLLECTION);
+        }
+    }
+
+    private void createCollection() {
+        CollectionOptions options = CollectionOptions.timeSeries("ts", timeSeries -> {
+            timeSeries = timeSeries.metaField("flow_id").granularity(granularity);
+            return hasExpiry() ? timeSeries.expireAfter(expireAfter) : timeSeries;
+        });
+        mongoTemplate.createCollection(FlowRecord.COLLECTION, options);
+        logger.info("Utworzono kolekcję szeregu czasowego {} (granulacja {}, wygasanie {})", FlowRecord.COLLECTION,
+                granularity, hasExpiry() ? expireAfter : "brak");
+    }
+
+    private void updateExpiry(Document options) {
+        Object current = options != null ? options.get("expireAfterSeconds") : null;
+        Object expected = hasExpiry() ? expireAfter.toSeconds() : "off";
+        if (current == null && !hasExpiry()
+                || current instanceof Number number && hasExpiry() && number.longValue() == expireAfter.toSeconds()) {
+            return;
+        }
+        mongoTemplate.getDb().runCommand(new Document("collMod", FlowRecord.COLLECTION)
+                .append("expireAfterSeconds", expected));
+        logger.info("Zmieniono wygasanie danych w kolekcji {} na {}", FlowRecord.COLLECTION, expected);
+    }
+
+    private boolean hasExpiry() {
+        return expireAfter != null && !expireAfter.isZero() && !expireAfter.isNegative();
+    }
+}
@@ -1,11 +1,14 @@
 package com.sbtgdata.data;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "errors")
+@CompoundIndex(name = "flow_id_date", def = "{ 'flow_id': 1, 'date': -1 }")
 public class FlowError {
 
     @Id
@@ -18,6 +21,12 @@ public class FlowError {
 
     private LocalDateTime date;
 
+    @Indexed(unique = true, sparse = true)
+    private String fingerprint;
+
+    private Long count;
+    private LocalDateTime lastSeen;
+
     public FlowError() {
     }
 
@@ -58,4 +67,28 @@ public class FlowError {
     public void setDate(LocalDateTime date) {
         this.date = date;
     }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public long getCount() {
+        return count != null ? count : 1;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeen != null ? lastSeen : date;
+    }
+
+    public void setLastSeen(LocalDateTime lastSeen) {
+        this.lastSeen = lastSeen;
+    }
 }
@@ -1,13 +1,17 @@
 package com.sbtgdata.data;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface FlowErrorRepository extends MongoRepository<FlowError, String> {
     List<FlowError> findByFlowId(String flowId);
+    Stream<FlowError> streamByFlowIdInOrderByDateDesc(Collection<String> flowIds, Limit limit);
     void deleteByFlowId(String flowId);
 }
 
@@ -1,62 +1,159 @@
 package com.sbtgdata.data;
 
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class FlowErrorService {
 
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     @Autowired
     private FlowErrorRepository flowErrorRepository;
 
     @Autowired
     private DataFlowRepository dataFlowRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${errors.user.max-results:1000}")
+    private int userErrorsMaxResults;
+
+    @Value("${errors.count.estimate-cap:10000}")
+    private int errorCountEstimateCap;
+
+    @Value("${errors.fingerprinting.enabled:true}")
+    private boolean fingerprintingEnabled;
+
     public List<FlowError> getErrorsByFlowId(String flowId) {
         return flowErrorRepository.findByFlowId(flowId);
     }
 
-    public List<FlowError> getUniqueErrorsByFlowId(String flowId) {
-        List<FlowError> allErrors = flowErrorRepository.findByFlowId(flowId);
-        List<FlowError> uniqueErrors = new ArrayList<>();
-        Set<String> seenMessages = new HashSet<>();
+    public List<ErrorSummary> getErrorSummariesByFlowId(String flowId) {
+        TypedAggregation<FlowError> aggregation = Aggregation.newAggregation(FlowError.class,
+                Aggregation.match(Criteria.where("flowId").is(flowId).and("message").ne(null)),
+                Aggregation.group("message")
+                        .sum(ConditionalOperators.ifNull("count").then(1)).as("count")
+                        .min("date").as("firstSeen")
+                        .max(ConditionalOperators.ifNull("lastSeen").thenValueOf("date")).as("lastSeen"),
+                Aggregation.project("count", "firstSeen", "lastSeen").and("_id").as("message"),
+                Aggregation.sort(Sort.Direction.DESC, "lastSeen"));
+
+        return mongoTemplate.aggregate(aggregation, ErrorSummary.class).getMappedResults();
+    }
 
-        for (FlowError error : allErrors) {
-            if (error.getMessage() != null && !seenMessages.contains(error.getMessage())) {
-                seenMessages.add(error.getMessage());
-                uniqueErrors.add(error);
-            }
+    public Map<String, Long> countUniqueErrorsByFlowIds(Collection<String> flowIds) {
+        Map<String, Long> counts = new HashMap<>();
+        if (flowIds == null || flowIds.isEmpty()) {
+            return counts;
         }
 
-        return uniqueErrors;
+        TypedAggregation<FlowError> aggregation = Aggregation.newAggregation(FlowError.class,
+                Aggregation.match(Criteria.where("flowId").in(flowIds).and("message").ne(null)),
+                Aggregation.group("flowId", "message"),
+                Aggregation.group("flowId").count().as("count"));
+
+        for (Document row : mongoTemplate.aggregate(aggregation, Document.class)) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
     }
 
     public List<FlowError> getErrorsByUserId(String userId) {
-        try {
-            org.bson.types.ObjectId objectId = new org.bson.types.ObjectId(userId);
-            List<String> userFlowIds = dataFlowRepository.findByUserId(objectId).stream()
-                    .map(DataFlow::getId)
-                    .collect(Collectors.toList());
-
-            return flowErrorRepository.findAll().stream()
-                    .filter(error -> userFlowIds.contains(error.getFlowId()))
-                    .collect(Collectors.toList());
-        } catch (IllegalArgumentException e) {
+        List<String> userFlowIds = findFlowIdsByUserId(userId);
+        if (userFlowIds.isEmpty()) {
             return new ArrayList<>();
         }
+
+        try (Stream<FlowError> errors = flowErrorRepository.streamByFlowIdInOrderByDateDesc(userFlowIds,
+                Limit.of(userErrorsMaxResults))) {
+            return errors.collect(Collectors.toList());
+        }
+    }
+
+    public List<FlowError> getErrorsPageByUserId(String userId, FlowError after, int offset, int limit,
+            boolean ascending) {
+        List<String> userFlowIds = findFlowIdsByUserId(userId);
+        if (userFlowIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Query query = Query.query(Criteria.where("flowId").in(userFlowIds))
+                .with(Sort.by(direction, "date").and(Sort.by(direction, "id")))
+                .limit(limit);
+
+        if (after != null && after.getDate() != null) {
+            ObjectId afterId = new ObjectId(after.getId());
+            Criteria beyondKey = ascending
+                    ? new Criteria().orOperator(Criteria.where("date").gt(after.getDate()),
+                            Criteria.where("date").is(after.getDate()).and("id").gt(afterId))
+                    : new Criteria().orOperator(Criteria.where("date").lt(after.getDate()),
+                            Criteria.where("date").is(after.getDate()).and("id").lt(afterId));
+            query.addCriteria(beyondKey);
+        } else if (offset > 0) {
+            query.skip(offset);
+        }
+
+        return mongoTemplate.find(query, FlowError.class);
+    }
+
+    public long estimateErrorCountByUserId(String userId) {
+        List<String> userFlowIds = findFlowIdsByUserId(userId);
+        if (userFlowIds.isEmpty()) {
+            return 0;
+        }
+
+        Query query = Query.query(Criteria.where("flowId").in(userFlowIds)).limit(errorCountEstimateCap);
+        return mongoTemplate.count(query, FlowError.class);
+    }
+
+    private List<String> findFlowIdsByUserId(String userId) {
+        if (userId == null || !ObjectId.isValid(userId)) {
+            return new ArrayList<>();
+        }
+        return dataFlowRepository.findIdsByUserId(new ObjectId(userId)).stream()
+                .map(DataFlow::getId)
+                .collect(Collectors.toList());
+    }
+
+    public void recordError(String flowId, String message) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!fingerprintingEnabled) {
+            flowErrorRepository.save(new FlowError(message, flowId));
+            return;
+        }
+
+        Query query = Query.query(Criteria.where("fingerprint").is(ErrorFingerprint.of(flowId, message)));
+        Update update = new Update()
+                .setOnInsert("flowId", flowId)
+                .setOnInsert("message", message)
+                .setOnInsert("date", now)
+                .set("lastSeen", now)
+                .inc("count", 1);
+        mongoTemplate.upsert(query, update, FlowError.class);
     }
 
     public void deleteError(String errorId) {
@@ -67,4 +164,11 @@ public class FlowErrorService {
         flowErrorRepository.deleteByFlowId(flowId);
     }
 
+    public void deleteAllErrorsByFlowIds(List<String> flowIds) {
+        for (int from = 0; from < flowIds.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = flowIds.subList(from, Math.min(from + DELETE_BATCH_SIZE, flowIds.size()));
+            mongoTemplate.remove(Query.query(Criteria.where("flowId").in(batch)), FlowError.class);
+        }
+    }
+
 }
@@ -0,0 +1,479 @@
+package com.sbtgdata.data;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+public class FlowIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowIngestService.class);
+
+    public static final String REASON_KEY_RATE = "key_rate";
+    public static final String REASON_FLOW_RATE = "flow_rate";
+    public static final String REASON_FLOW_QUEUE = "flow_queue";
+    public static final String REASON_QUEUE_FULL = "queue_full";
+
+    public enum FlowAccess {
+        ALLOWED,
+        NOT_FOUND,
+        INACTIVE
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DataFlowService dataFlowService;
+
+    @Autowired
+    private FlowDataService flowDataService;
+
+    @Autowired
+    private FlowRollupService flowRollupService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingest.queue-capacity:200000}")
+    private int queueCapacity = 200000;
+
+    @Value("${ingest.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${ingest.writers:2}")
+    private int writers = 2;
+
+    @Value("${ingest.flow-cache.ttl:30s}")
+    private Duration flowCacheTtl = Duration.ofSeconds(30);
+
+    @Value("${ingest.flow-cache.max-size:10000}")
+    private int flowCacheMaxSize = 10000;
+
+    @Value("${ingest.write.max-attempts:5}")
+    private int writeMaxAttempts = 5;
+
+    @Value("${ingest.write.retry-backoff:200ms}")
+    private Duration writeRetryBackoff = Duration.ofMillis(200);
+
+    @Value("${ingest.rate.flow.per-second:5000}")
+    private int flowRateLimit = 5000;
+
+    @Value("${ingest.rate.flow.burst:20000}")
+    private int flowBurst = 20000;
+
+    @Value("${ingest.rate.key.per-second:20000}")
+    private int keyRateLimit = 20000;
+
+    @Value("${ingest.rate.key.burst:50000}")
+    private int keyBurst = 50000;
+
+    @Value("${ingest.queue.max-flow-share:0.25}")
+    private double maxFlowShare = 0.25;
+
+    @Value("${ingest.queue.retry-after:1s}")
+    private Duration queueRetryAfter = Duration.ofSeconds(1);
+
+    private final LinkedBlockingQueue<Document> queue = new LinkedBlockingQueue<>();
+    private final Map<String, CachedFlow> flowCache = new ConcurrentHashMap<>();
+    private final Map<String, Long> deletedFlows = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> flowBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> keyBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Integer> queuedByFlow = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectedRecords = new ConcurrentHashMap<>();
+    private Semaphore capacity;
+    private int maxQueuedPerFlow;
+    private ExecutorService writerExecutor;
+    private volatile boolean running;
+
+    private Counter acceptedRecords;
+    private Counter failedRecords;
+    private Counter discardedRecords;
+    private Counter failedRollups;
+    private Timer batchTimer;
+
+    public FlowAccess checkAccess(String flowId, String userId) {
+        if (deletedFlows.containsKey(flowId)) {
+            return FlowAccess.NOT_FOUND;
+        }
+        long now = System.nanoTime();
+        CachedFlow cached = flowCache.get(flowId);
+        if (cached == null || now - cached.expiresAt() >= 0) {
+            cached = dataFlowService.findById(flowId)
+                    .map(flow -> new CachedFlow(flow.getUserIdAsString(), flow.getStatus(),
+                            flow.getIngestRateLimit(), flow.getIngestBurst(), now + flowCacheTtl.toNanos()))
+                    .orElse(new CachedFlow(null, null, null, null, now + flowCacheTtl.toNanos()));
+            if (flowCache.size() >= flowCacheMaxSize) {
+                evictFlowCache(now);
+            }
+            flowCache.put(flowId, cached);
+        }
+
+        if (cached.userId() == null || !cached.userId().equals(userId)) {
+            return FlowAccess.NOT_FOUND;
+        }
+        if (DataFlow.STATUS_STOPPED.equals(cached.status()) || DataFlow.STATUS_DELETING.equals(cached.status())) {
+            return FlowAccess.INACTIVE;
+        }
+        return FlowAccess.ALLOWED;
+    }
+
+    public void enqueue(String flowId, String userId, List<Map<String, Object>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Date ts = new Date();
+        List<Document> documents = new ArrayList<>(records.size());
+        for (Map<String, Object> record : records) {
+            documents.add(new Document("flow_id", flowId).append("ts", ts).append("data", toBson(record)));
+        }
+        int count = documents.size();
+
+        TokenBucket keyBucket = bucket(keyBuckets, userId, keyRateLimit, keyBurst);
+        long wait = keyBucket.tryAcquire(count);
+        if (wait > 0) {
+            throw reject(REASON_KEY_RATE, count, Duration.ofNanos(wait));
+        }
+
+        CachedFlow flow = flowCache.get(flowId);
+        TokenBucket flowBucket = bucket(flowBuckets, flowId,
+                flow != null && flow.rateLimit() != null ? flow.rateLimit() : flowRateLimit,
+                flow != null && flow.burst() != null ? flow.burst() : flowBurst);
+        wait = flowBucket.tryAcquire(count);
+        if (wait > 0) {
+            keyBucket.release(count);
+            throw reject(REASON_FLOW_RATE, count, Duration.ofNanos(wait));
+        }
+
+        boolean[] admitted = new boolean[1];
+        queuedByFlow.compute(flowId, (id, queued) -> {
+            int current = queued != null ? queued : 0;
+            if (current > 0 && current + count > maxQueuedPerFlow) {
+                return queued;
+            }
+            admitted[0] = true;
+            return current + count;
+        });
+        if (!admitted[0]) {
+            keyBucket.release(count);
+            flowBucket.release(count);
+            throw reject(REASON_FLOW_QUEUE, count, queueRetryAfter);
+        }
+        if (!capacity.tryAcquire(count)) {
+            releaseQueued(flowId, count);
+            keyBucket.release(count);
+            flowBucket.release(count);
+            throw reject(REASON_QUEUE_FULL, count, queueRetryAfter);
+        }
+        queue.addAll(documents);
+        acceptedRecords.increment(count);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public void evictFlow(String flowId) {
+        flowCache.remove(flowId);
+    }
+
+    @EventListener
+    public void onFlowChanged(FlowChangedEvent event) {
+        String flowId = event.getFlowId();
+        if (!event.isDeleted()) {
+            evictFlow(flowId);
+            return;
+        }
+
+        // zakolejkowane rekordy odrzucają pisarze przy pobieraniu z kolejki, nie blokujemy wątku zdarzenia
+        deletedFlows.put(flowId, System.nanoTime() + flowCacheTtl.toNanos());
+        flowCache.remove(flowId);
+    }
+
+    @Scheduled(fixedDelayString = "${ingest.rate.evict-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        flowBuckets.values().removeIf(TokenBucket::isFull);
+        keyBuckets.values().removeIf(TokenBucket::isFull);
+        long now = System.nanoTime();
+        deletedFlows.entrySet().removeIf(entry -> now - entry.getValue() >= 0
+                && !queuedByFlow.containsKey(entry.getKey()));
+    }
+
+    @PostConstruct
+    public void startWriters() {
+        flowDataService.ensureCollection();
+        capacity = new Semaphore(queueCapacity);
+        maxQueuedPerFlow = (int) (queueCapacity * maxFlowShare);
+        acceptedRecords = Counter.builder("ingest.records").register(meterRegistry);
+        for (String reason : List.of(REASON_KEY_RATE, REASON_FLOW_RATE, REASON_FLOW_QUEUE, REASON_QUEUE_FULL)) {
+            rejectedRecords.put(reason, Counter.builder("ingest.rejected").tag("reason", reason)
+                    .register(meterRegistry));
+        }
+        failedRecords = Counter.builder("ingest.failed").register(meterRegistry);
+        discardedRecords = Counter.builder("ingest.discarded").register(meterRegistry);
+        failedRollups = Counter.builder("ingest.rollup.failed").register(meterRegistry);
+        batchTimer = Timer.builder("ingest.batch").register(meterRegistry);
+        Gauge.builder("ingest.queue.depth", queue, LinkedBlockingQueue::size).register(meterRegistry);
+
+        running = true;
+        AtomicInteger threadCount = new AtomicInteger();
+        writerExecutor = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "flow-ingest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writers; i++) {
+            writerExecutor.execute(this::writeLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stopWriters() throws InterruptedException {
+        running = false;
+        writerExecutor.shutdown();
+        if (!writerExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Nie zapisano {} rekordów z kolejki przed zamknięciem", queue.size());
+            writerExecutor.shutdownNow();
+        }
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            List<Document> batch = new ArrayList<>(batchSize);
+            try {
+                Document first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                capacity.release(batch.size());
+                releaseQueued(batch);
+            }
+        }
+    }
+
+    private void releaseQueued(List<Document> batch) {
+        Map<String, Integer> perFlow = new HashMap<>();
+        for (Document document : batch) {
+            perFlow.merge(document.getString("flow_id"), 1, Integer::sum);
+        }
+        perFlow.forEach(this::releaseQueued);
+    }
+
+    private void releaseQueued(String flowId, int count) {
+        queuedByFlow.computeIfPresent(flowId, (id, queued) -> queued > count ? queued - count : null);
+    }
+
+    private boolean isDiscarded(Document document) {
+        String flowId = document.getString("flow_id");
+        if (deletedFlows.containsKey(flowId)) {
+            return true;
+        }
+        CachedFlow cached = flowCache.get(flowId);
+        return cached != null && cached.userId() == null;
+    }
+
+    private void evictFlowCache(long now) {
+        flowCache.values().removeIf(entry -> now - entry.expiresAt() >= 0);
+        Iterator<String> keys = flowCache.keySet().iterator();
+        int toRemove = flowCache.size() - flowCacheMaxSize * 9 / 10;
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private TokenBucket bucket(Map<String, TokenBucket> buckets, String key, int rateLimit, int burst) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null || !bucket.hasLimits(rateLimit, burst)) {
+            bucket = buckets.compute(key, (k, existing) -> existing != null && existing.hasLimits(rateLimit, burst)
+                    ? existing
+                    : new TokenBucket(rateLimit, burst, System::nanoTime));
+        }
+        return bucket;
+    }
+
+    private IngestRejectedException reject(String reason, int count, Duration retryAfter) {
+        rejectedRecords.get(reason).increment(count);
+        return new IngestRejectedException(REASON_QUEUE_FULL.equals(reason) || REASON_FLOW_QUEUE.equals(reason)
+                ? "Kolejka zapisu jest pełna, spróbuj ponownie"
+                : "Przekroczono limit przyjmowania danych, spróbuj ponownie", reason, retryAfter);
+    }
+
+    private void writeBatch(List<Document> batch) {
+        List<Document> pending = new ArrayList<>(batch.size());
+        for (Document document : batch) {
+            if (!isDiscarded(document)) {
+                pending.add(document);
+            }
+        }
+        if (pending.size() < batch.size()) {
+            discardedRecords.increment(batch.size() - pending.size());
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Document> written = pending;
+        try {
+            insertWithRetry(pending);
+        } catch (MongoBulkWriteException ex) {
+            int failed = ex.getWriteErrors().size();
+            failedRecords.increment(failed);
+            logger.error("Nie zapisano {} z {} rekordów: {}", failed, pending.size(), ex.getMessage());
+            Set<Integer> failedIndexes = ex.getWriteErrors().stream()
+                    .map(BulkWriteError::getIndex)
+                    .collect(Collectors.toSet());
+            written = new ArrayList<>(pending.size() - failed);
+            for (int i = 0; i < pending.size(); i++) {
+                if (!failedIndexes.contains(i)) {
+                    written.add(pending.get(i));
+                }
+            }
+        } catch (RuntimeException ex) {
+            failedRecords.increment(pending.size());
+            logger.error("Nie zapisano partii {} rekordów: {}", pending.size(), ex.getMessage());
+            // część partii mogła trafić do bazy mimo błędu, więc agregaty tych dni trzeba przeliczyć
+            markRollupsDirty(pending);
+            return;
+        } finally {
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        written = purgeDeletedDuringWrite(written);
+        if (written.isEmpty()) {
+            return;
+        }
+        try {
+            flowRollupService.apply(written);
+        } catch (RuntimeException ex) {
+            failedRollups.increment(written.size());
+            logger.error("Nie zaktualizowano agregatów dla {} rekordów: {}", written.size(), ex.getMessage());
+            markRollupsDirty(written);
+        }
+    }
+
+    private void markRollupsDirty(List<Document> records) {
+        try {
+            flowRollupService.markDirty(records);
+        } catch (RuntimeException ex) {
+            logger.error("Nie oznaczono agregatów {} rekordów do przeliczenia: {}", records.size(), ex.getMessage());
+        }
+    }
+
+    private List<Document> purgeDeletedDuringWrite(List<Document> written) {
+        Set<String> deleted = written.stream()
+                .map(document -> document.getString("flow_id"))
+                .filter(deletedFlows::containsKey)
+                .collect(Collectors.toSet());
+        if (deleted.isEmpty()) {
+            return written;
+        }
+        // przepływ usunięto w trakcie zapisu, więc sprzątamy po sobie to, co zdążyło trafić do bazy
+        try {
+            flowDataService.deleteByFlowIds(deleted);
+        } catch (RuntimeException ex) {
+            logger.error("Nie usunięto danych przepływów {} zapisanych po ich usunięciu: {}", deleted,
+                    ex.getMessage());
+        }
+        List<Document> remaining = new ArrayList<>(written.size());
+        for (Document document : written) {
+            if (!deleted.contains(document.getString("flow_id"))) {
+                remaining.add(document);
+            }
+        }
+        discardedRecords.increment(written.size() - remaining.size());
+        return remaining;
+    }
+
+    private void insertWithRetry(List<Document> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                mongoTemplate.getCollection(FlowRecord.COLLECTION)
+                        .insertMany(batch, new InsertManyOptions().ordered(false));
+                return;
+            } catch (MongoTimeoutException | MongoSocketOpenException ex) {
+                if (attempt >= writeMaxAttempts) {
+                    throw ex;
+                }
+                logger.warn("Baza niedostępna przy zapisie partii {} rekordów, próba {}: {}", batch.size(), attempt,
+                        ex.getMessage());
+                try {
+                    Thread.sleep(writeRetryBackoff.toMillis() << Math.min(attempt - 1, 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private static Object toBson(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Document document = new Document();
+            map.forEach((key, nested) -> document.append(String.valueOf(key), toBson(nested)));
+            return document;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> converted = new ArrayList<>(list.size());
+            for (Object nested : list) {
+                converted.add(toBson(nested));
+            }
+            return converted;
+        }
+        if (value instanceof BigInteger bigInteger) {
+            return new Decimal128(new BigDecimal(bigInteger));
+        }
+        if (value instanceof BigDecimal bigDecimal) {
+            return new Decimal128(bigDecimal);
+        }
+        return value;
+    }
+
+    private record CachedFlow(String userId, String status, Integer rateLimit, Integer burst, long expiresAt) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Document(collection = FlowRecord.COLLECTION)
+@CompoundIndex(name = "flow_id_ts", def = "{ 'flow_id': 1, 'ts': 1 }")
+public class FlowRecord {
+
+    public static final String COLLECTION = "flow_data";
+
+    @Id
+    private String id;
+
+    @Field("flow_id")
+    private String flowId;
+
+    private Instant ts;
+
+    private Map<String, Object> data;
+
+    public FlowRecord() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public void setFlowId(String flowId) {
+        this.flowId = flowId;
+    }
+
+    public Instant getTs() {
+        return ts;
+    }
+
+    public void setTs(Instant ts) {
+        this.ts = ts;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    public void setData(Map<String, Object> data) {
+        this.data = data;
+    }
+}
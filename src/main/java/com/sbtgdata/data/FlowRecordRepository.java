@@ -0,0 +1,14 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface FlowRecordRepository extends MongoRepository<FlowRecord, String> {
+
+    @Query(value = "{ 'flow_id': ?0, 'ts': { $gte: ?1, $lt: ?2 } }", count = true)
+    long countByFlowIdAndTsRange(String flowId, Instant from, Instant to);
+}
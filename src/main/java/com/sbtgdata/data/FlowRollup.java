@@ -0,0 +1,133 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Document(collection = FlowRollup.COLLECTION)
+@CompoundIndex(name = "flow_id_resolution_bucket", def = "{ 'flow_id': 1, 'resolution': 1, 'bucket': 1 }",
+        unique = true)
+public class FlowRollup {
+
+    public static final String COLLECTION = "flow_rollups";
+
+    @Id
+    private String id;
+
+    @Field("flow_id")
+    private String flowId;
+
+    private RollupResolution resolution;
+    private Instant bucket;
+    private long count;
+    private Map<String, FieldStats> fields;
+
+    public FlowRollup() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public void setFlowId(String flowId) {
+        this.flowId = flowId;
+    }
+
+    public RollupResolution getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(RollupResolution resolution) {
+        this.resolution = resolution;
+    }
+
+    public Instant getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Instant bucket) {
+        this.bucket = bucket;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public Map<String, FieldStats> getFields() {
+        return fields;
+    }
+
+    public void setFields(Map<String, FieldStats> fields) {
+        this.fields = fields;
+    }
+
+    public static class FieldStats {
+
+        private long count;
+        private double sum;
+        private double min;
+        private double max;
+
+        public FieldStats() {
+        }
+
+        public FieldStats(long count, double sum, double min, double max) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public void setSum(double sum) {
+            this.sum = sum;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public void setMin(double min) {
+            this.min = min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public void setMax(double max) {
+            this.max = max;
+        }
+
+        public double getAvg() {
+            return count > 0 ? sum / count : 0;
+        }
+    }
+}
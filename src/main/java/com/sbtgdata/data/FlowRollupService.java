@@ -0,0 +1,320 @@
+package com.sbtgdata.data;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@Service
+public class FlowRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowRollupService.class);
+
+    private static final Instant OPEN_START = Instant.EPOCH;
+    private static final Instant OPEN_END = Instant.parse("9999-12-31T23:59:59Z");
+
+    static final String DIRTY_COLLECTION = "flow_rollup_dirty";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${flow-data.export.batch-size:1000}")
+    private int exportBatchSize = 1000;
+
+    @Value("${rollup.zone:UTC}")
+    private ZoneId zone = ZoneOffset.UTC;
+
+    @Value("${rollup.max-fields:100}")
+    private int maxFields = 100;
+
+    @Value("${rollup.reconcile.grace:15m}")
+    private Duration reconcileGrace = Duration.ofMinutes(15);
+
+    @Value("${rollup.reconcile.lease:10m}")
+    private Duration reconcileLease = Duration.ofMinutes(10);
+
+    public void apply(List<Document> records) {
+        Map<BucketKey, BucketStats> buckets = new HashMap<>();
+        for (Document record : records) {
+            add(buckets, record);
+        }
+        if (buckets.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollup.COLLECTION);
+        buckets.forEach((key, stats) -> bulk.upsert(bucketQuery(key), stats.toUpdate(maxFields)));
+        bulk.execute();
+    }
+
+    // przedziały, których agregaty mogły się rozjechać z surowymi danymi, przelicza reconcile
+    public void markDirty(List<Document> records) {
+        Map<String, DirtyDay> days = new HashMap<>();
+        for (Document record : records) {
+            String flowId = record.getString("flow_id");
+            Instant day = RollupResolution.DAY.truncate(record.getDate("ts").toInstant(), zone);
+            days.putIfAbsent(flowId + "|" + day, new DirtyDay(flowId, day));
+        }
+        if (days.isEmpty()) {
+            return;
+        }
+
+        Date now = new Date();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DIRTY_COLLECTION);
+        days.forEach((id, day) -> bulk.upsert(Query.query(Criteria.where("_id").is(id)), new Update()
+                .set("markedAt", now)
+                .setOnInsert("flow_id", day.flowId())
+                .setOnInsert("day", Date.from(day.day()))));
+        bulk.execute();
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.reconcile.interval-ms:3600000}",
+            initialDelayString = "${rollup.reconcile.interval-ms:3600000}")
+    public void reconcile() {
+        reconcile(Instant.now());
+    }
+
+    // przelicza z flow_data tylko dni oznaczone przy nieudanym zapisie agregatów
+    void reconcile(Instant now) {
+        Instant cutoff = now.minus(reconcileGrace);
+        Query pending = Query.query(claimable(now));
+        pending.fields().include("_id");
+        long rebuilt = 0;
+        int days = 0;
+        for (Document marker : mongoTemplate.find(pending, Document.class, DIRTY_COLLECTION)) {
+            Document claimed = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(marker.get("_id"))).addCriteria(claimable(now)),
+                    new Update().set("claimedUntil", Date.from(now.plus(reconcileLease))),
+                    FindAndModifyOptions.options().returnNew(true), Document.class, DIRTY_COLLECTION);
+            if (claimed == null) {
+                continue;
+            }
+            String flowId = claimed.getString("flow_id");
+            Instant day = claimed.getDate("day").toInstant();
+            rebuilt += rebuildDay(flowId, day, cutoff);
+            days++;
+            if (RollupResolution.DAY.next(day, zone).isAfter(cutoff)) {
+                // dzień jeszcze trwa, więc znacznik zostaje do kolejnego przebiegu
+                continue;
+            }
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(claimed.get("_id"))
+                    .and("markedAt").is(claimed.getDate("markedAt"))), DIRTY_COLLECTION);
+        }
+        if (days > 0) {
+            logger.info("Przeliczono {} agregatów w {} oznaczonych dniach", rebuilt, days);
+        }
+    }
+
+    private long rebuildDay(String flowId, Instant day, Instant cutoff) {
+        Instant end = RollupResolution.DAY.next(day, zone);
+        Query query = Query.query(Criteria.where("flow_id").is(flowId)
+                        .and("ts").gte(Date.from(day)).lt(Date.from(end)))
+                .cursorBatchSize(exportBatchSize);
+        Map<BucketKey, BucketStats> buckets = new HashMap<>();
+        try (Stream<Document> records = mongoTemplate.stream(query, Document.class, FlowRecord.COLLECTION)) {
+            Iterator<Document> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                add(buckets, iterator.next());
+            }
+        }
+        return replace(flowId, buckets, day, end, cutoff);
+    }
+
+    private Criteria claimable(Instant now) {
+        return new Criteria().orOperator(Criteria.where("claimedUntil").exists(false),
+                Criteria.where("claimedUntil").lte(Date.from(now)));
+    }
+
+    public Stream<FlowRollup> streamRange(String flowId, RollupResolution resolution, Instant from, Instant to,
+            long skip) {
+        Query query = rangeQuery(flowId, resolution, from, to)
+                .with(Sort.by("bucket"))
+                .skip(skip)
+                .cursorBatchSize(exportBatchSize);
+        return mongoTemplate.stream(query, FlowRollup.class);
+    }
+
+    public RangeSnapshot snapshotRange(String flowId, RollupResolution resolution, Instant from, Instant to) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(rangeCriteria(flowId, resolution, from, to)),
+                Aggregation.group().count().as("rows").sum("count").as("records").max("bucket").as("last"));
+        Document result = mongoTemplate.aggregate(aggregation, FlowRollup.COLLECTION, Document.class)
+                .getUniqueMappedResult();
+        if (result == null) {
+            return new RangeSnapshot(0, "0");
+        }
+        long rows = ((Number) result.get("rows")).longValue();
+        // agregaty są aktualizowane w miejscu, więc wersję wyznacza łączna liczba rekordów
+        return new RangeSnapshot(rows, rows + ":" + result.get("records") + ":" + result.get("last"));
+    }
+
+    public long writeCsv(String flowId, RollupResolution resolution, Instant from, Instant to, long skip,
+            OutputStream out) throws IOException {
+        FlowCsvWriter csv = new FlowCsvWriter(out);
+        if (skip > 0) {
+            FlowRollup first = mongoTemplate.findOne(rangeQuery(flowId, resolution, from, to)
+                    .with(Sort.by("bucket")).limit(1), FlowRollup.class);
+            if (first != null) {
+                csv.resumeAfterHeader(first);
+            }
+        }
+        try (Stream<FlowRollup> rollups = streamRange(flowId, resolution, from, to, skip)) {
+            Iterator<FlowRollup> iterator = rollups.iterator();
+            while (iterator.hasNext()) {
+                csv.write(iterator.next());
+            }
+        }
+        csv.flush();
+        return csv.getRowCount();
+    }
+
+    private Query rangeQuery(String flowId, RollupResolution resolution, Instant from, Instant to) {
+        return Query.query(rangeCriteria(flowId, resolution, from, to));
+    }
+
+    // zakres obejmuje też przedział zawierający from
+    private Criteria rangeCriteria(String flowId, RollupResolution resolution, Instant from, Instant to) {
+        return Criteria.where("flow_id").is(flowId)
+                .and("resolution").is(resolution.name())
+                .and("bucket").gte(Date.from(from != null ? resolution.truncate(from, zone) : OPEN_START))
+                .lt(Date.from(to != null ? to : OPEN_END));
+    }
+
+    private void add(Map<BucketKey, BucketStats> buckets, Document record) {
+        String flowId = record.getString("flow_id");
+        Instant ts = record.getDate("ts").toInstant();
+        Document data = record.get("data", Document.class);
+        for (RollupResolution resolution : RollupResolution.values()) {
+            buckets.computeIfAbsent(new BucketKey(flowId, resolution, resolution.truncate(ts, zone)),
+                    key -> new BucketStats()).add(data, maxFields);
+        }
+    }
+
+    private long replace(String flowId, Map<BucketKey, BucketStats> buckets, Instant day, Instant end,
+            Instant cutoff) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollup.COLLECTION);
+        long replaced = 0;
+        for (Map.Entry<BucketKey, BucketStats> entry : buckets.entrySet()) {
+            BucketKey key = entry.getKey();
+            if (key.resolution().next(key.bucket(), zone).isAfter(cutoff)) {
+                continue;
+            }
+            bulk.upsert(bucketQuery(key), entry.getValue().toReplacement());
+            replaced++;
+        }
+
+        // przedziały dzienne zapisane przed zmianą rollup.zone nie pokrywają się z bieżącym dniem
+        bulk.remove(Query.query(Criteria.where("flow_id").is(flowId)
+                .and("resolution").is(RollupResolution.DAY.name())
+                .and("bucket").gte(Date.from(day)).lt(Date.from(end)).ne(Date.from(day))));
+        bulk.execute();
+        return replaced;
+    }
+
+    private static Query bucketQuery(BucketKey key) {
+        return Query.query(Criteria.where("flow_id").is(key.flowId())
+                .and("resolution").is(key.resolution().name())
+                .and("bucket").is(Date.from(key.bucket())));
+    }
+
+    private record BucketKey(String flowId, RollupResolution resolution, Instant bucket) {
+    }
+
+    private record DirtyDay(String flowId, Instant day) {
+    }
+
+    private static class BucketStats {
+
+        private long count;
+        private final Map<String, FlowRollup.FieldStats> fields = new LinkedHashMap<>();
+
+        void add(Document data, int maxFields) {
+            count++;
+            if (data == null) {
+                return;
+            }
+            data.forEach((name, value) -> {
+                if (!(value instanceof Number number) || name.isEmpty() || name.indexOf('.') >= 0
+                        || name.charAt(0) == '$') {
+                    return;
+                }
+                double v = number.doubleValue();
+                if (!Double.isFinite(v)) {
+                    return;
+                }
+                FlowRollup.FieldStats stats = fields.get(name);
+                if (stats == null) {
+                    if (fields.size() < maxFields) {
+                        fields.put(name, new FlowRollup.FieldStats(1, v, v, v));
+                    }
+                } else {
+                    stats.setCount(stats.getCount() + 1);
+                    stats.setSum(stats.getSum() + v);
+                    stats.setMin(Math.min(stats.getMin(), v));
+                    stats.setMax(Math.max(stats.getMax(), v));
+                }
+            });
+        }
+
+        // nowe pole jest dopisywane tylko, gdy przedział ma mniej niż maxFields pól
+        UpdateDefinition toUpdate(int maxFields) {
+            List<AggregationOperation> stages = new ArrayList<>();
+            stages.add(context -> new Document("$set", new Document("count",
+                    new Document("$add", List.of(new Document("$ifNull", List.of("$count", 0L)), count)))));
+            fields.forEach((name, stats) -> {
+                String path = "$fields." + name;
+                Document merged = new Document("count", new Document("$add",
+                        List.of(new Document("$ifNull", List.of(path + ".count", 0L)), stats.getCount())))
+                        .append("sum", new Document("$add",
+                                List.of(new Document("$ifNull", List.of(path + ".sum", 0.0)), stats.getSum())))
+                        .append("min", new Document("$min", List.of(path + ".min", stats.getMin())))
+                        .append("max", new Document("$max", List.of(path + ".max", stats.getMax())));
+                Document known = new Document("$ne", List.of(new Document("$type", path), "missing"));
+                Document room = new Document("$lt", List.of(new Document("$size", new Document("$objectToArray",
+                        new Document("$ifNull", List.of("$fields", new Document())))), maxFields));
+                stages.add(context -> new Document("$set", new Document("fields." + name,
+                        new Document("$cond", List.of(new Document("$or", List.of(known, room)), merged,
+                                "$$REMOVE")))));
+            });
+            return AggregationUpdate.from(stages);
+        }
+
+        Update toReplacement() {
+            Document values = new Document();
+            fields.forEach((name, stats) -> values.put(name, new Document("count", stats.getCount())
+                    .append("sum", stats.getSum())
+                    .append("min", stats.getMin())
+                    .append("max", stats.getMax())));
+            return new Update().set("count", count).set("fields", values);
+        }
+    }
+}
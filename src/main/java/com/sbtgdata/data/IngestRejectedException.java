@@ -0,0 +1,23 @@
+package com.sbtgdata.data;
+
+import java.time.Duration;
+
+public class IngestRejectedException extends RuntimeException {
+
+    private final String reason;
+    private final Duration retryAfter;
+
+    public IngestRejectedException(String message, String reason, Duration retryAfter) {
+        super(message);
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,116 @@
+package com.sbtgdata.data;
+
+import com.sbtgdata.config.ErrorEventPublisher;
+import com.sbtgdata.config.WebhookCallNotPermittedException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class OutboxDispatcher {
+
+    private final OutboxService outboxService;
+    private final ErrorEventPublisher errorEventPublisher;
+    private final Map<String, OutboxEventHandler> handlers = new HashMap<>();
+    private final ExecutorService executor;
+
+    @Value("${outbox.dispatcher.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.dispatcher.lease:2m}")
+    private Duration lease;
+
+    public OutboxDispatcher(OutboxService outboxService, ErrorEventPublisher errorEventPublisher,
+            List<OutboxEventHandler> eventHandlers,
+            @Value("${outbox.dispatcher.parallelism:8}") int parallelism) {
+        this.outboxService = outboxService;
+        this.errorEventPublisher = errorEventPublisher;
+        for (OutboxEventHandler handler : eventHandlers) {
+            handler.getEventTypes().forEach(type -> handlers.put(type, handler));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.dispatcher.interval-ms:1000}")
+    public void dispatch() {
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        for (OutboxEvent head : outboxService.findDueHeads(batchSize)) {
+            OutboxEvent claimed = outboxService.claim(head, lease);
+            if (claimed != null) {
+                deliveries.add(CompletableFuture.runAsync(() -> deliver(claimed), executor));
+            }
+        }
+        CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).join();
+    }
+
+    void deliver(OutboxEvent event) {
+        OutboxEventHandler handler = handlers.get(event.getType());
+        if (handler == null) {
+            outboxService.fail(event, "Brak obsługi zdarzenia " + event.getType());
+            return;
+        }
+
+        try {
+            handler.deliver(event);
+            outboxService.complete(event);
+        } catch (RuntimeException ex) {
+            WebhookCallNotPermittedException notPermitted = findNotPermitted(ex);
+            // po wyczerpaniu odroczeń otwarty obwód liczy się jako nieudana próba
+            if (notPermitted != null && outboxService.defer(event, notPermitted.getRetryAfter())) {
+                return;
+            }
+
+            boolean exhausted = outboxService.fail(event, ex.getMessage());
+            errorEventPublisher.publish(event.getId(), flowIdOf(event), userIdOf(event),
+                    event.getType() + " (próba " + (event.getAttempts() + 1) + "): " + ex.getMessage());
+            if (exhausted) {
+                try {
+                    handler.onDeliveryFailed(event, ex);
+                } catch (RuntimeException compensationEx) {
+                    errorEventPublisher.publish(event.getId(), flowIdOf(event), userIdOf(event),
+                            "Kompensacja " + event.getType() + " nieudana: " + compensationEx.getMessage());
+                }
+            }
+        }
+    }
+
+    private WebhookCallNotPermittedException findNotPermitted(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebhookCallNotPermittedException notPermitted) {
+                return notPermitted;
+            }
+        }
+        return null;
+    }
+
+    private String flowIdOf(OutboxEvent event) {
+        Object flowId = event.getPayload().get("flow_id");
+        return flowId != null ? flowId.toString() : null;
+    }
+
+    private String userIdOf(OutboxEvent event) {
+        Object userId = event.getPayload().get("user_id");
+        return userId != null ? userId.toString() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
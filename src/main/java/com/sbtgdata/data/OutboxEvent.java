@@ -0,0 +1,139 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Document(collection = "outbox")
+@CompoundIndex(name = "status_aggregate_created", def = "{ 'status': 1, 'aggregateId': 1, 'createdAt': 1 }")
+public class OutboxEvent {
+
+    public static final String FLOW_CREATED = "FLOW_CREATED";
+    public static final String FLOW_DELETED = "FLOW_DELETED";
+    public static final String FLOW_STARTED = "FLOW_STARTED";
+    public static final String FLOW_STOPPED = "FLOW_STOPPED";
+    public static final String USER_CREATED = "USER_CREATED";
+    public static final String USER_DELETED = "USER_DELETED";
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    private String id;
+
+    private String type;
+    private String aggregateId;
+    private Map<String, Object> payload;
+    private String status;
+    private int attempts;
+    private int deferrals;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime lockedUntil;
+
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(String type, String aggregateId, Map<String, Object> payload) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.payload = payload != null ? payload : new HashMap<>();
+        this.status = STATUS_PENDING;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public Map<String, Object> getPayload() {
+        return payload;
+    }
+
+    public void setPayload(Map<String, Object> payload) {
+        this.payload = payload;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getDeferrals() {
+        return deferrals;
+    }
+
+    public void setDeferrals(int deferrals) {
+        this.deferrals = deferrals;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+}
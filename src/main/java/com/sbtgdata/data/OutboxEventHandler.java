@@ -0,0 +1,12 @@
+package com.sbtgdata.data;
+
+import java.util.Set;
+
+public interface OutboxEventHandler {
+
+    Set<String> getEventTypes();
+
+    void deliver(OutboxEvent event);
+
+    void onDeliveryFailed(OutboxEvent event, RuntimeException cause);
+}
@@ -0,0 +1,9 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String> {
+    List<OutboxEvent> findByStatusOrderByCreatedAtDesc(String status);
+}
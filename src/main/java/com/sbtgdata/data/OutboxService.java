@@ -0,0 +1,140 @@
+package com.sbtgdata.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${outbox.retry.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry.max-deferrals:20}")
+    private int maxDeferrals = 20;
+
+    @Value("${outbox.retry.initial-backoff:2s}")
+    private Duration initialBackoff;
+
+    @Value("${outbox.retry.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    public OutboxEvent enqueue(String type, String aggregateId, Map<String, Object> payload) {
+        return outboxEventRepository.save(new OutboxEvent(type, aggregateId, payload));
+    }
+
+    public void discard(OutboxEvent event) {
+        outboxEventRepository.deleteById(event.getId());
+    }
+
+    public List<OutboxEvent> findFailed() {
+        return outboxEventRepository.findByStatusOrderByCreatedAtDesc(OutboxEvent.STATUS_FAILED);
+    }
+
+    public List<OutboxEvent> findDueHeads(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        TypedAggregation<OutboxEvent> aggregation = Aggregation.newAggregation(OutboxEvent.class,
+                Aggregation.match(Criteria.where("status")
+                        .in(OutboxEvent.STATUS_PENDING, OutboxEvent.STATUS_IN_PROGRESS)),
+                Aggregation.sort(Sort.by("createdAt", "id")),
+                Aggregation.group("aggregateId").first(Aggregation.ROOT).as("head"),
+                Aggregation.replaceRoot("head"),
+                Aggregation.match(claimable(now)),
+                Aggregation.sort(Sort.by("createdAt")),
+                Aggregation.limit(limit));
+
+        return mongoTemplate.aggregate(aggregation, OutboxEvent.class).getMappedResults();
+    }
+
+    public OutboxEvent claim(OutboxEvent event, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("id").is(event.getId())).addCriteria(claimable(now));
+        Update update = new Update()
+                .set("status", OutboxEvent.STATUS_IN_PROGRESS)
+                .set("lockedUntil", now.plus(lease));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                OutboxEvent.class);
+    }
+
+    public void complete(OutboxEvent event) {
+        outboxEventRepository.deleteById(event.getId());
+    }
+
+    public boolean fail(OutboxEvent event, String error) {
+        int attempts = event.getAttempts() + 1;
+        boolean exhausted = attempts >= maxAttempts;
+
+        Update update = new Update()
+                .set("attempts", attempts)
+                .set("lastError", error)
+                .unset("lockedUntil");
+        if (exhausted) {
+            update.set("status", OutboxEvent.STATUS_FAILED);
+        } else {
+            update.set("status", OutboxEvent.STATUS_PENDING)
+                    .set("nextAttemptAt", LocalDateTime.now().plus(backoff(attempts)));
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(event.getId())), update, OutboxEvent.class);
+        return exhausted;
+    }
+
+    public boolean defer(OutboxEvent event, Duration delay) {
+        if (event.getDeferrals() >= maxDeferrals) {
+            return false;
+        }
+        Update update = new Update()
+                .set("status", OutboxEvent.STATUS_PENDING)
+                .set("nextAttemptAt", LocalDateTime.now().plus(delay))
+                .inc("deferrals", 1)
+                .unset("lockedUntil");
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(event.getId())), update, OutboxEvent.class);
+        return true;
+    }
+
+    public void setPendingPayloadField(String type, String aggregateId, String field, Object value) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("type").is(type).and("aggregateId").is(aggregateId)
+                        .and("status").in(OutboxEvent.STATUS_PENDING, OutboxEvent.STATUS_IN_PROGRESS)),
+                new Update().set("payload." + field, value), OutboxEvent.class);
+    }
+
+    public void removeFailedPayloadField(String type, String field) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("type").is(type).and("status").is(OutboxEvent.STATUS_FAILED)
+                        .and("payload." + field).exists(true)),
+                new Update().unset("payload." + field), OutboxEvent.class);
+    }
+
+    Duration backoff(int attempts) {
+        long exponential = initialBackoff.toMillis() << Math.min(attempts - 1, 20);
+        long capped = Math.min(exponential, maxBackoff.toMillis());
+        long jitter = ThreadLocalRandom.current().nextLong(capped / 5 + 1);
+        return Duration.ofMillis(capped - capped / 10 + jitter);
+    }
+
+    private Criteria claimable(LocalDateTime now) {
+        return new Criteria().orOperator(
+                Criteria.where("status").is(OutboxEvent.STATUS_PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(OutboxEvent.STATUS_IN_PROGRESS).and("lockedUntil").lte(now));
+    }
+}
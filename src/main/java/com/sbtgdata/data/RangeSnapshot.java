@@ -0,0 +1,4 @@
+package com.sbtgdata.data;
+
+public record RangeSnapshot(long rows, String version) {
+}
@@ -1,6 +1,7 @@
 package com.sbtgdata.data;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.HashSet;
@@ -12,7 +13,9 @@ public class Role {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     private String name;
+
     private Set<String> allowedViews;
 
     public Role() {
@@ -0,0 +1,61 @@
+package com.sbtgdata.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class RolePermissionCache {
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public Set<String> getAllowedViews(Collection<String> roleNames) {
+        if (roleNames == null || roleNames.isEmpty()) {
+            return Set.of();
+        }
+
+        Map<String, Set<String>> viewsByRole = snapshot().viewsByRole();
+        Set<String> allowedViews = new HashSet<>();
+        for (String roleName : roleNames) {
+            allowedViews.addAll(viewsByRole.getOrDefault(roleName, Set.of()));
+        }
+        return allowedViews;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.generation() == generation.get()) {
+            return current;
+        }
+
+        long loadedGeneration = generation.get();
+        Map<String, Set<String>> viewsByRole = new HashMap<>();
+        for (Role role : roleRepository.findAll()) {
+            viewsByRole.put(role.getName(),
+                    role.getAllowedViews() != null ? Set.copyOf(role.getAllowedViews()) : Set.of());
+        }
+        Snapshot loaded = new Snapshot(loadedGeneration, Map.copyOf(viewsByRole));
+        if (generation.get() == loadedGeneration) {
+            snapshot = loaded;
+        }
+        return loaded;
+    }
+
+    private record Snapshot(long generation, Map<String, Set<String>> viewsByRole) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.sbtgdata.data;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+public enum RollupResolution {
+    MINUTE(ChronoUnit.MINUTES), HOUR(ChronoUnit.HOURS), DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupResolution(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public Instant truncate(Instant ts, ZoneId zone) {
+        return ts.atZone(zone).truncatedTo(unit).toInstant();
+    }
+
+    public Instant next(Instant bucket, ZoneId zone) {
+        return bucket.atZone(zone).plus(1, unit).toInstant();
+    }
+}
@@ -0,0 +1,53 @@
+package com.sbtgdata.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+class TokenBucket {
+
+    private final int ratePerSecond;
+    private final int burst;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(int ratePerSecond, int burst, LongSupplier clock) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.nanosPerToken = Math.max(1, TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.burstNanos = burst * nanosPerToken;
+        this.clock = clock;
+        this.theoreticalArrival = new AtomicLong(clock.getAsLong());
+    }
+
+    long tryAcquire(int permits) {
+        long cost = permits * nanosPerToken;
+        long allowance = Math.max(burstNanos, cost);
+        while (true) {
+            long now = clock.getAsLong();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + cost;
+            long excess = next - now - allowance;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    void release(int permits) {
+        theoreticalArrival.addAndGet(-permits * nanosPerToken);
+    }
+
+    boolean isFull() {
+        return theoreticalArrival.get() - clock.getAsLong() <= 0;
+    }
+
+    boolean hasLimits(int ratePerSecond, int burst) {
+        return this.ratePerSecond == ratePerSecond && this.burst == burst;
+    }
+}
@@ -1,6 +1,7 @@
 package com.sbtgdata.data;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Set;
@@ -11,10 +12,14 @@ public class User {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     private String email;
+
     private String password;
     private Set<String> roles;
-    private String API_KEY;
+
+    @Indexed(unique = true, sparse = true)
+    private String apiKeyHash;
 
     public User() {
     }
@@ -61,11 +66,11 @@ public class User {
         return roles != null && roles.contains(role);
     }
 
-    public String getApiKey() {
-        return API_KEY;
+    public String getApiKeyHash() {
+        return apiKeyHash;
     }
 
-    public void setApiKey(String apiKey) {
-        this.API_KEY = apiKey;
+    public void setApiKeyHash(String apiKeyHash) {
+        this.apiKeyHash = apiKeyHash;
     }
 }
@@ -0,0 +1,14 @@
+package com.sbtgdata.data;
+
+public class UserChangedEvent {
+
+    private final String email;
+
+    public UserChangedEvent(String email) {
+        this.email = email;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
@@ -0,0 +1,140 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "user_deletion_jobs")
+public class UserDeletionJob {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    public static final String PHASE_FLOWS = "FLOWS";
+    public static final String PHASE_PURGE = "PURGE";
+    public static final String PHASE_USER = "USER";
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String userId;
+
+    private String email;
+    private String status;
+    private String phase;
+    private int totalFlows;
+    private int processedFlows;
+    private int failedFlows;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public UserDeletionJob() {
+    }
+
+    public UserDeletionJob(String userId, String email) {
+        this.userId = userId;
+        this.email = email;
+        this.status = STATUS_PENDING;
+        this.phase = PHASE_FLOWS;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    public boolean isActive() {
+        return STATUS_PENDING.equals(status) || STATUS_RUNNING.equals(status);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public int getTotalFlows() {
+        return totalFlows;
+    }
+
+    public void setTotalFlows(int totalFlows) {
+        this.totalFlows = totalFlows;
+    }
+
+    public int getProcessedFlows() {
+        return processedFlows;
+    }
+
+    public void setProcessedFlows(int processedFlows) {
+        this.processedFlows = processedFlows;
+    }
+
+    public int getFailedFlows() {
+        return failedFlows;
+    }
+
+    public void setFailedFlows(int failedFlows) {
+        this.failedFlows = failedFlows;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
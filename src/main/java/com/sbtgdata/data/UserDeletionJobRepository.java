@@ -0,0 +1,15 @@
+package com.sbtgdata.data;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserDeletionJobRepository extends MongoRepository<UserDeletionJob, String> {
+    List<UserDeletionJob> findByStatusIn(Collection<String> statuses);
+
+    Optional<UserDeletionJob> findFirstByUserIdAndStatusIn(String userId, Collection<String> statuses);
+
+    List<UserDeletionJob> findTop20ByOrderByCreatedAtDesc();
+}
@@ -0,0 +1,226 @@
+package com.sbtgdata.data;
+
+import com.sbtgdata.config.ErrorEventPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+public class UserDeletionService {
+
+    private static final List<String> ACTIVE_STATUSES = List.of(UserDeletionJob.STATUS_PENDING,
+            UserDeletionJob.STATUS_RUNNING);
+
+    @Autowired
+    private UserDeletionJobRepository jobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataFlowRepository dataFlowRepository;
+
+    @Autowired
+    private DataFlowService dataFlowService;
+
+    @Autowired
+    private FlowErrorService flowErrorService;
+
+    @Autowired
+    private FlowDataService flowDataService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ErrorEventPublisher errorEventPublisher;
+
+    @Value("${users.deletion.parallelism:8}")
+    private int parallelism = 8;
+
+    private ExecutorService jobExecutor;
+    private ExecutorService teardownExecutor;
+
+    public UserDeletionJob startDeletion(String userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("Użytkownik nie istnieje"));
+
+        return jobRepository.findFirstByUserIdAndStatusIn(userId, ACTIVE_STATUSES).orElseGet(() -> {
+            UserDeletionJob job = jobRepository.save(new UserDeletionJob(userId, user.getEmail()));
+            submit(job.getId());
+            return job;
+        });
+    }
+
+    public UserDeletionJob retry(String jobId) {
+        Query query = Query.query(Criteria.where("id").is(jobId).and("status").is(UserDeletionJob.STATUS_FAILED));
+        Update update = new Update()
+                .set("status", UserDeletionJob.STATUS_PENDING)
+                .set("failedFlows", 0)
+                .set("updatedAt", LocalDateTime.now())
+                .unset("lastError");
+        UserDeletionJob job = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), UserDeletionJob.class);
+        if (job == null) {
+            if (!jobRepository.existsById(jobId)) {
+                throw new IllegalArgumentException("Zadanie nie istnieje");
+            }
+            throw new IllegalStateException("Można ponowić tylko nieudane zadanie");
+        }
+
+        submit(jobId);
+        return job;
+    }
+
+    public List<UserDeletionJob> findRecentJobs() {
+        return jobRepository.findTop20ByOrderByCreatedAtDesc();
+    }
+
+    public boolean isDeletionPending(String userId) {
+        return jobRepository.findFirstByUserIdAndStatusIn(userId, ACTIVE_STATUSES).isPresent();
+    }
+
+    @EventListener
+    public void onProvisioningFailed(UserProvisioningFailedEvent event) {
+        if (userRepository.existsById(event.getUserId())) {
+            startDeletion(event.getUserId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeJobs() {
+        jobRepository.findByStatusIn(ACTIVE_STATUSES).forEach(job -> submit(job.getId()));
+    }
+
+    void run(String jobId) {
+        UserDeletionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !job.isActive()) {
+            return;
+        }
+
+        updateJob(jobId, new Update().set("status", UserDeletionJob.STATUS_RUNNING));
+        try {
+            if (UserDeletionJob.PHASE_FLOWS.equals(job.getPhase())) {
+                if (!tearDownFlows(job)) {
+                    return;
+                }
+                updateJob(jobId, new Update().set("phase", UserDeletionJob.PHASE_PURGE));
+                job.setPhase(UserDeletionJob.PHASE_PURGE);
+            }
+
+            if (UserDeletionJob.PHASE_PURGE.equals(job.getPhase())) {
+                List<String> flowIds = dataFlowRepository.findIdsByUserId(new ObjectId(job.getUserId())).stream()
+                        .map(DataFlow::getId)
+                        .collect(Collectors.toList());
+                flowErrorService.deleteAllErrorsByFlowIds(flowIds);
+                flowDataService.deleteByFlowIds(flowIds);
+                dataFlowService.deleteAllByUserId(job.getUserId());
+                updateJob(jobId, new Update().set("phase", UserDeletionJob.PHASE_USER));
+            }
+
+            userService.deleteAccount(job.getUserId());
+            updateJob(jobId, new Update().set("status", UserDeletionJob.STATUS_COMPLETED));
+        } catch (RuntimeException ex) {
+            fail(job, ex.getMessage());
+        }
+    }
+
+    private boolean tearDownFlows(UserDeletionJob job) {
+        Query query = Query.query(Criteria.where("userId").is(new ObjectId(job.getUserId())));
+        query.fields().include("status", "userId", "ownerEmail");
+        List<DataFlow> flows = mongoTemplate.find(query, DataFlow.class);
+
+        int alreadyProcessed = (int) flows.stream()
+                .filter(flow -> DataFlow.STATUS_DELETING.equals(flow.getStatus()))
+                .count();
+        updateJob(job.getId(), new Update()
+                .set("totalFlows", flows.size())
+                .set("processedFlows", alreadyProcessed));
+
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> teardowns = new ArrayList<>();
+        for (DataFlow flow : flows) {
+            if (DataFlow.STATUS_DELETING.equals(flow.getStatus())) {
+                continue;
+            }
+            teardowns.add(CompletableFuture.runAsync(() -> {
+                try {
+                    dataFlowService.markForDeletion(flow);
+                    updateJob(job.getId(), new Update().inc("processedFlows", 1));
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    updateJob(job.getId(), new Update()
+                            .inc("failedFlows", 1)
+                            .set("lastError", "Przepływ " + flow.getId() + ": " + ex.getMessage()));
+                }
+            }, teardownExecutor));
+        }
+        CompletableFuture.allOf(teardowns.toArray(new CompletableFuture[0])).join();
+
+        if (failed.get() > 0) {
+            fail(job, "Nie udało się przygotować do usunięcia " + failed.get() + " przepływów");
+            return false;
+        }
+        return true;
+    }
+
+    private void fail(UserDeletionJob job, String message) {
+        updateJob(job.getId(), new Update()
+                .set("status", UserDeletionJob.STATUS_FAILED)
+                .set("lastError", message));
+        errorEventPublisher.publish(job.getId(), null, job.getUserId(),
+                "Usuwanie użytkownika " + job.getEmail() + " nieudane: " + message);
+    }
+
+    private void updateJob(String jobId, Update update) {
+        update.set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(jobId)), update, UserDeletionJob.class);
+    }
+
+    private void submit(String jobId) {
+        jobExecutor.execute(() -> run(jobId));
+    }
+
+    @PostConstruct
+    public void startExecutors() {
+        jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        teardownExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "user-deletion-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdownExecutors() {
+        jobExecutor.shutdown();
+        teardownExecutor.shutdown();
+    }
+}
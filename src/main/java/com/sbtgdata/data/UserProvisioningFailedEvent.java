@@ -0,0 +1,14 @@
+package com.sbtgdata.data;
+
+public class UserProvisioningFailedEvent {
+
+    private final String userId;
+
+    public UserProvisioningFailedEvent(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
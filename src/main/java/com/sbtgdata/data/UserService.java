@@ -2,6 +2,9 @@ package com.sbtgdata.data;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -16,13 +19,14 @@ import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 @Service
-public class UserService {
+public class UserService implements OutboxEventHandler {
+
+    private static final String API_KEY_FIELD = "API_KEY";
 
     @Autowired
     private UserRepository userRepository;
@@ -37,13 +41,13 @@ public class UserService {
     private ErrorEventPublisher errorEventPublisher;
 
     @Autowired
-    private DataFlowRepository dataFlowRepository;
+    private OutboxService outboxService;
 
     @Autowired
-    private FlowErrorService flowErrorService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    private DataFlowService dataFlowService;
+    private ApiKeyService apiKeyService;
 
     @Value("${external.user.create.webhook.url:}")
     private String userCreateWebhookEndpoint;
@@ -67,12 +71,21 @@ public class UserService {
         user.setEmail(email);
         user.setPassword(passwordEncoder.encode(password));
         user.setRoles(roles);
-        user.setApiKey(generateApiKey());
+        String apiKey = generateApiKey();
+        user.setApiKeyHash(apiKeyService.hash(apiKey));
+
+        if (userCreateWebhookEndpoint == null || userCreateWebhookEndpoint.isBlank()) {
+            throw new IllegalArgumentException("Rejestracja nieudana: Brak skonfigurowanego endpointu webhook");
+        }
 
         User savedUser = userRepository.save(user);
 
         try {
-            notifyExternalOnCreate(savedUser);
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("user_id", savedUser.getId());
+            // jawny klucz żyje tylko w zdarzeniu, konto przechowuje wyłącznie skrót
+            payload.put(API_KEY_FIELD, apiKey);
+            outboxService.enqueue(OutboxEvent.USER_CREATED, savedUser.getId(), payload);
         } catch (RuntimeException ex) {
             if (savedUser.getId() != null) {
                 userRepository.deleteById(savedUser.getId());
@@ -101,47 +114,72 @@ public class UserService {
         }
 
         User user = userOpt.get();
+        String oldApiKeyHash = user.getApiKeyHash();
         String newApiKey = generateApiKey();
-        user.setApiKey(newApiKey);
+        user.setApiKeyHash(apiKeyService.hash(newApiKey));
         userRepository.save(user);
+        outboxService.setPendingPayloadField(OutboxEvent.USER_CREATED, userId, API_KEY_FIELD, newApiKey);
+        apiKeyService.invalidateHash(oldApiKeyHash);
+        apiKeyService.invalidate(newApiKey);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
         return newApiKey;
     }
 
-    public String getApiKey(String userId) {
-        return userRepository.findById(userId)
-                .map(User::getApiKey)
-                .orElse(null);
+    public User updateRoles(User user, Set<String> roles) {
+        user.setRoles(roles);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getEmail()));
+        return saved;
     }
 
-    public void deleteUser(String userId) {
+    public void deleteAccount(String userId) {
         Optional<User> userOpt = userRepository.findById(userId);
         if (userOpt.isEmpty()) {
-            throw new IllegalArgumentException("Użytkownik nie istnieje");
-        }
-
-        User user = userOpt.get();
-
-        org.bson.types.ObjectId userObjectId = new org.bson.types.ObjectId(userId);
-        List<DataFlow> userFlows = dataFlowRepository.findByUserId(userObjectId);
-        for (DataFlow flow : userFlows) {
-            if ("RUNNING".equals(flow.getStatus())) {
-                try {
-                    dataFlowService.stopFlow(flow.getId());
-                } catch (Exception e) {
-                    errorEventPublisher.publish(null, flow.getId(), userId,
-                            "Nie udało się zatrzymać przepływu przed usunięciem: " + e.getMessage());
-                }
-            }
-            dataFlowService.delete(flow);
+            return;
         }
 
+        OutboxEvent event = outboxService.enqueue(OutboxEvent.USER_DELETED, userId, Map.of("user_id", userId));
         try {
-            notifyExternalOnDelete(user);
+            userRepository.deleteById(userId);
         } catch (RuntimeException ex) {
-            errorEventPublisher.publish(null, null, userId, ex.getMessage());
+            outboxService.discard(event);
+            throw ex;
+        }
+        apiKeyService.invalidateHash(userOpt.get().getApiKeyHash());
+        eventPublisher.publishEvent(new UserChangedEvent(userOpt.get().getEmail()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scrubStoredApiKeys() {
+        outboxService.removeFailedPayloadField(OutboxEvent.USER_CREATED, API_KEY_FIELD);
+    }
+
+    @Override
+    public Set<String> getEventTypes() {
+        return Set.of(OutboxEvent.USER_CREATED, OutboxEvent.USER_DELETED);
+    }
+
+    @Override
+    public void deliver(OutboxEvent event) {
+        switch (event.getType()) {
+            case OutboxEvent.USER_CREATED -> notifyExternalOnCreate(event);
+            case OutboxEvent.USER_DELETED -> notifyExternalOnDelete(event.getPayload());
+            default -> throw new IllegalArgumentException("Nieobsługiwane zdarzenie: " + event.getType());
         }
+    }
 
-        userRepository.deleteById(userId);
+    @Override
+    public void onDeliveryFailed(OutboxEvent event, RuntimeException cause) {
+        if (OutboxEvent.USER_CREATED.equals(event.getType())) {
+            // orkiestrator nie zna klucza API, więc konto jest usuwane jak przy nieudanej rejestracji
+            eventPublisher.publishEvent(new UserProvisioningFailedEvent(event.getAggregateId()));
+            outboxService.removeFailedPayloadField(OutboxEvent.USER_CREATED, API_KEY_FIELD);
+            errorEventPublisher.publish(event.getId(), null, event.getAggregateId(),
+                    "Rejestracja nieudana, konto zostanie usunięte: " + cause.getMessage());
+            return;
+        }
+        errorEventPublisher.publish(event.getId(), null, event.getAggregateId(),
+                "Powiadomienie " + event.getType() + " nie zostało dostarczone: " + cause.getMessage());
     }
 
     private String generateApiKey() {
@@ -151,14 +189,23 @@ public class UserService {
         return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
-    private void notifyExternalOnCreate(User user) {
+    private void notifyExternalOnCreate(OutboxEvent event) {
         if (userCreateWebhookEndpoint == null || userCreateWebhookEndpoint.isBlank()) {
             throw new IllegalStateException("Brak skonfigurowanego endpointu webhook");
         }
 
+        String userId = event.getAggregateId();
+        if (!userRepository.existsById(userId)) {
+            return;
+        }
+        Object apiKey = event.getPayload() != null ? event.getPayload().get(API_KEY_FIELD) : null;
+        if (apiKey == null) {
+            throw new IllegalStateException("Zdarzenie nie zawiera klucza API");
+        }
+
         Map<String, Object> payload = new HashMap<>();
-        payload.put("user_id", user.getId());
-        payload.put("API_KEY", user.getApiKey());
+        payload.put("user_id", userId);
+        payload.put(API_KEY_FIELD, apiKey);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -171,14 +218,11 @@ public class UserService {
         }
     }
 
-    private void notifyExternalOnDelete(User user) {
+    private void notifyExternalOnDelete(Map<String, Object> payload) {
         if (userDeleteWebhookEndpoint == null || userDeleteWebhookEndpoint.isBlank()) {
             return;
         }
 
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("user_id", user.getId());
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
 
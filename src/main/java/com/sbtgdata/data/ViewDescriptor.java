@@ -0,0 +1,11 @@
+package com.sbtgdata.data;
+
+import com.vaadin.flow.component.Component;
+
+public record ViewDescriptor(Class<? extends Component> viewClass, String title, boolean navigable,
+        boolean openToAll, boolean adminOnly) {
+
+    public String className() {
+        return viewClass.getName();
+    }
+}
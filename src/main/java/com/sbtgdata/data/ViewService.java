@@ -1,37 +1,79 @@
 package com.sbtgdata.data;
 
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 @Service
 public class ViewService {
 
-    public Map<String, String> getAllViews() {
-        Map<String, String> views = new HashMap<>();
+    private static final Set<String> OPEN_TO_ALL = Set.of("LoginView", "RegisterView", "WelcomeView");
+    private static final Set<String> NOT_NAVIGABLE = Set.of("LoginView", "RegisterView", "WelcomeView", "RootView");
+    private static final Set<String> ADMIN_ONLY = Set.of("RoleManagementView");
+
+    private List<ViewDescriptor> views = List.of();
+    private Map<String, ViewDescriptor> viewsByClassName = Map.of();
+    private Map<String, String> titlesByClassName = Map.of();
+
+    @PostConstruct
+    public void buildRegistry() {
         ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
         provider.addIncludeFilter(new AnnotationTypeFilter(Route.class));
 
-        Set<BeanDefinition> components = provider.findCandidateComponents("com.sbtgdata.views");
-        for (BeanDefinition component : components) {
+        List<ViewDescriptor> descriptors = new ArrayList<>();
+        for (BeanDefinition component : provider.findCandidateComponents("com.sbtgdata.views")) {
             try {
                 Class<?> cls = Class.forName(component.getBeanClassName());
-                String title = cls.getSimpleName();
-                com.vaadin.flow.router.PageTitle pageTitle = cls.getAnnotation(com.vaadin.flow.router.PageTitle.class);
-                if (pageTitle != null) {
-                    title = pageTitle.value();
+                if (!Component.class.isAssignableFrom(cls)) {
+                    continue;
                 }
-                views.put(cls.getName(), title);
+                @SuppressWarnings("unchecked")
+                Class<? extends Component> viewClass = (Class<? extends Component>) cls;
+                PageTitle pageTitle = cls.getAnnotation(PageTitle.class);
+                String title = pageTitle != null ? pageTitle.value() : cls.getSimpleName();
+                String simpleName = cls.getSimpleName();
+                descriptors.add(new ViewDescriptor(viewClass, title, !NOT_NAVIGABLE.contains(simpleName),
+                        OPEN_TO_ALL.contains(simpleName), ADMIN_ONLY.contains(simpleName)));
             } catch (ClassNotFoundException e) {
                 e.printStackTrace();
             }
         }
+        descriptors.sort(Comparator.comparing(ViewDescriptor::title));
+
+        Map<String, ViewDescriptor> byClassName = new LinkedHashMap<>();
+        Map<String, String> titles = new LinkedHashMap<>();
+        for (ViewDescriptor descriptor : descriptors) {
+            byClassName.put(descriptor.className(), descriptor);
+            titles.put(descriptor.className(), descriptor.title());
+        }
+
+        views = List.copyOf(descriptors);
+        viewsByClassName = Map.copyOf(byClassName);
+        titlesByClassName = Collections.unmodifiableMap(titles);
+    }
+
+    public List<ViewDescriptor> getViews() {
         return views;
     }
+
+    public ViewDescriptor getView(Class<?> viewClass) {
+        return viewsByClassName.get(viewClass.getName());
+    }
+
+    public Map<String, String> getAllViews() {
+        return titlesByClassName;
+    }
 }
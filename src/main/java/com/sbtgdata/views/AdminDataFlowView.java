@@ -3,7 +3,9 @@ package com.sbtgdata.views;
 import com.sbtgdata.config.SecurityService;
 import com.sbtgdata.data.DataFlow;
 import com.sbtgdata.data.DataFlowService;
+import com.sbtgdata.data.DataFlowSummary;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H2;
@@ -12,16 +14,17 @@ import com.vaadin.flow.component.html.Pre;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.BeforeEnterEvent;
 import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.spring.data.VaadinSpringDataHelpers;
 import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.List;
 import java.util.stream.Collectors;
 
 @Route(value = "admin/dataflows", layout = MainLayout.class)
@@ -31,8 +34,8 @@ public class AdminDataFlowView extends VerticalLayout implements BeforeEnterObse
 
     private final DataFlowService dataFlowService;
     private final SecurityService securityService;
-    private final Grid<DataFlow> grid = new Grid<>(DataFlow.class);
-    private List<DataFlow> allFlows;
+    private final Grid<DataFlowSummary> grid = new Grid<>(DataFlowSummary.class);
+    private String emailFilter;
 
     @Autowired
     public AdminDataFlowView(DataFlowService dataFlowService, SecurityService securityService) {
@@ -48,26 +51,45 @@ public class AdminDataFlowView extends VerticalLayout implements BeforeEnterObse
         filterField.setPlaceholder("Wpisz email...");
         filterField.setClearButtonVisible(true);
         filterField.setValueChangeMode(ValueChangeMode.LAZY);
-        filterField.addValueChangeListener(e -> updateList(e.getValue()));
+        filterField.addValueChangeListener(e -> {
+            emailFilter = e.getValue();
+            updateList();
+        });
 
         configureGrid();
 
-        Button refreshButton = new Button("Odśwież", e -> updateList(null));
-
-        add(title, filterField, refreshButton, grid);
-        updateList(null);
+        Button refreshButton = new Button("Odśwież", e -> updateList());
+
+        Checkbox allMatchingCheckbox = new Checkbox("Wszystkie pasujące do filtra");
+        BulkFlowActionBar bulkActions = new BulkFlowActionBar(dataFlowService,
+                () -> allMatchingCheckbox.getValue()
+                        ? dataFlowService.findIds(emailFilter)
+                        : grid.getSelectedItems().stream().map(DataFlowSummary::getId).collect(Collectors.toList()),
+                () -> null,
+                () -> {
+                    grid.deselectAll();
+                    updateList();
+                });
+        bulkActions.add(allMatchingCheckbox);
+
+        add(title, filterField, refreshButton, bulkActions, grid);
+        grid.setItems(
+                query -> dataFlowService.findSummaryPage(emailFilter, VaadinSpringDataHelpers.toSpringPageRequest(query))
+                        .stream(),
+                query -> (int) dataFlowService.count(emailFilter));
     }
 
     private void configureGrid() {
+        grid.setSelectionMode(Grid.SelectionMode.MULTI);
         grid.setColumns("name", "ownerEmail");
 
-        grid.addColumn(DataFlow::getStatus)
+        grid.addColumn(DataFlowSummary::getStatus)
                 .setHeader("Status")
+                .setSortProperty("status")
                 .setResizable(true)
                 .setAutoWidth(true);
 
-        grid.addColumn(flow -> flow.getPackages() != null && !flow.getPackages().isEmpty() ? "Tak"
-                : "Nie")
+        grid.addColumn(flow -> flow.hasPackages() ? "Tak" : "Nie")
                 .setHeader("Dodatkowe biblioteki");
 
         grid.addComponentColumn(flow -> {
@@ -77,14 +99,14 @@ public class AdminDataFlowView extends VerticalLayout implements BeforeEnterObse
         }).setHeader("Akcje");
     }
 
-    private void confirmAndDeleteFlow(DataFlow flow) {
+    private void confirmAndDeleteFlow(DataFlowSummary flow) {
         Dialog confirmDialog = new Dialog();
         confirmDialog.setHeaderTitle("Potwierdzenie usunięcia");
         confirmDialog.setWidth("500px");
 
         VerticalLayout dialogLayout = new VerticalLayout();
 
-        boolean isRunning = "RUNNING".equals(flow.getStatus());
+        boolean isRunning = flow.isActive();
         String message = isRunning
                 ? "Przepływ \"" + flow.getName()
                         + "\" jest uruchomiony. Zostanie najpierw zatrzymany, a następnie usunięty. Kontynuować?"
@@ -101,8 +123,8 @@ public class AdminDataFlowView extends VerticalLayout implements BeforeEnterObse
                 }
 
                 // Teraz usuń przepływ (webhook + usunięcie z bazy)
-                dataFlowService.delete(flow);
-                updateList(null);
+                dataFlowService.deleteById(flow.getId());
+                updateList();
                 confirmDialog.close();
                 Notification.show("Przepływ usunięty", 3000, Notification.Position.MIDDLE);
             } catch (Exception ex) {
@@ -118,20 +140,19 @@ public class AdminDataFlowView extends VerticalLayout implements BeforeEnterObse
         confirmDialog.open();
     }
 
-    private void updateList(String emailFilter) {
-        allFlows = dataFlowService.findAll();
+    private void updateList() {
+        grid.getDataProvider().refreshAll();
+    }
 
-        if (emailFilter != null && !emailFilter.isEmpty()) {
-            List<DataFlow> filtered = allFlows.stream()
-                    .filter(flow -> flow.getOwnerEmail().toLowerCase().contains(emailFilter.toLowerCase()))
-                    .collect(Collectors.toList());
-            grid.setItems(filtered);
-        } else {
-            grid.setItems(allFlows);
+    private void openFlowViewer(DataFlowSummary summary) {
+        DataFlow flow = dataFlowService.findById(summary.getId()).orElse(null);
+        if (flow == null) {
+            Notification.show("Przepływ nie istnieje", 3000, Notification.Position.MIDDLE);
+            updateList();
+            return;
         }
-    }
 
-    private void openFlowViewer(DataFlow flow) {
+
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle("Podgląd przepływu: " + flow.getName());
         dialog.setWidth("800px");
@@ -158,6 +179,29 @@ public class AdminDataFlowView extends VerticalLayout implements BeforeEnterObse
         }
 
         dialogLayout.add(codeLayout);
+
+        IntegerField rateField = new IntegerField("Limit rekordów na sekundę");
+        rateField.setMin(1);
+        rateField.setPlaceholder("domyślny");
+        rateField.setValue(flow.getIngestRateLimit());
+
+        IntegerField burstField = new IntegerField("Limit chwilowy (burst)");
+        burstField.setMin(1);
+        burstField.setPlaceholder("domyślny");
+        burstField.setValue(flow.getIngestBurst());
+
+        Button saveLimitsButton = new Button("Zapisz limity", e -> {
+            try {
+                dataFlowService.updateIngestLimits(flow.getId(), rateField.getValue(), burstField.getValue());
+                Notification.show("Zapisano limity", 3000, Notification.Position.MIDDLE);
+            } catch (IllegalArgumentException ex) {
+                Notification.show(ex.getMessage(), 3000, Notification.Position.MIDDLE);
+            }
+        });
+
+        HorizontalLayout limitsLayout = new HorizontalLayout(rateField, burstField, saveLimitsButton);
+        limitsLayout.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
+        dialogLayout.add(new H3("Limity przyjmowania danych:"), limitsLayout);
         dialog.add(dialogLayout);
 
         Button closeButton = new Button("Zamknij", e -> dialog.close());
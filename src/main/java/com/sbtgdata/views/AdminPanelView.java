@@ -4,6 +4,8 @@ import com.sbtgdata.config.SecurityService;
 import com.sbtgdata.data.Role;
 import com.sbtgdata.data.RoleRepository;
 import com.sbtgdata.data.User;
+import com.sbtgdata.data.UserDeletionJob;
+import com.sbtgdata.data.UserDeletionService;
 import com.sbtgdata.data.UserRepository;
 import com.sbtgdata.data.UserService;
 import com.vaadin.flow.component.button.Button;
@@ -11,6 +13,7 @@ import com.vaadin.flow.component.checkbox.CheckboxGroup;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
@@ -19,6 +22,7 @@ import com.vaadin.flow.router.BeforeEnterEvent;
 import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
 import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -44,14 +48,19 @@ public class AdminPanelView extends VerticalLayout implements BeforeEnterObserve
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserDeletionService userDeletionService;
+
     private Grid<User> userGrid;
+    private Grid<UserDeletionJob> jobGrid;
 
     public AdminPanelView(SecurityService securityService, UserRepository userRepository,
-            RoleRepository roleRepository, UserService userService) {
+            RoleRepository roleRepository, UserService userService, UserDeletionService userDeletionService) {
         this.securityService = securityService;
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.userService = userService;
+        this.userDeletionService = userDeletionService;
 
         setSizeFull();
         setPadding(true);
@@ -72,9 +81,9 @@ public class AdminPanelView extends VerticalLayout implements BeforeEnterObserve
                     return;
                 }
                 try {
-                    userService.deleteUser(user.getId());
-                    refreshUsers();
-                    Notification.show("Użytkownik i wszystkie jego przepływy zostały usunięte");
+                    userDeletionService.startDeletion(user.getId());
+                    refreshJobs();
+                    Notification.show("Rozpoczęto usuwanie użytkownika i wszystkich jego przepływów");
                 } catch (Exception ex) {
                     Notification.show("Błąd podczas usuwania użytkownika: " + ex.getMessage(), 5000,
                             Notification.Position.MIDDLE);
@@ -83,13 +92,60 @@ public class AdminPanelView extends VerticalLayout implements BeforeEnterObserve
             return new HorizontalLayout(editRolesButton, deleteButton);
         }).setHeader("Akcje");
 
-        Button refreshButton = new Button("Odśwież", e -> refreshUsers());
+        Button refreshButton = new Button("Odśwież", e -> {
+            refreshUsers();
+            refreshJobs();
+        });
+
+        jobGrid = new Grid<>(UserDeletionJob.class, false);
+        jobGrid.addColumn(UserDeletionJob::getEmail).setHeader("Użytkownik");
+        jobGrid.addColumn(UserDeletionJob::getStatus).setHeader("Status");
+        jobGrid.addColumn(UserDeletionJob::getPhase).setHeader("Etap");
+        jobGrid.addColumn(job -> job.getProcessedFlows() + " / " + job.getTotalFlows()).setHeader("Przepływy");
+        jobGrid.addColumn(UserDeletionJob::getFailedFlows).setHeader("Nieudane");
+        jobGrid.addColumn(UserDeletionJob::getLastError).setHeader("Ostatni błąd").setFlexGrow(2);
+        jobGrid.addComponentColumn(job -> {
+            Button retryButton = new Button("Ponów", e -> {
+                try {
+                    userDeletionService.retry(job.getId());
+                    refreshJobs();
+                } catch (Exception ex) {
+                    Notification.show("Błąd: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
+                }
+            });
+            retryButton.setVisible(UserDeletionJob.STATUS_FAILED.equals(job.getStatus()));
+            return retryButton;
+        }).setHeader("Akcje");
+        jobGrid.setAllRowsVisible(true);
+
+        add(title, info, refreshButton, userGrid, new H3("Usuwanie użytkowników"), jobGrid);
 
-        add(title, info, refreshButton, userGrid);
+        addAttachListener(attach -> {
+            Registration pollRegistration = attach.getUI().addPollListener(poll -> refreshJobs());
+            addDetachListener(detach -> {
+                pollRegistration.remove();
+                detach.getUI().setPollInterval(-1);
+                detach.unregisterListener();
+            });
+            refreshJobs();
+        });
 
         refreshUsers();
     }
 
+    private void refreshJobs() {
+        List<UserDeletionJob> jobs = userDeletionService.findRecentJobs();
+        jobGrid.setItems(jobs);
+
+        boolean active = jobs.stream().anyMatch(UserDeletionJob::isActive);
+        getUI().ifPresent(ui -> {
+            if (!active && ui.getPollInterval() > 0) {
+                refreshUsers();
+            }
+            ui.setPollInterval(active ? 2000 : -1);
+        });
+    }
+
     private void refreshUsers() {
         List<User> users = userRepository.findAll();
         userGrid.setItems(users);
@@ -123,8 +179,7 @@ public class AdminPanelView extends VerticalLayout implements BeforeEnterObserve
                 selectedRoles = new HashSet<>();
                 selectedRoles.add("USER");
             }
-            user.setRoles(selectedRoles);
-            userRepository.save(user);
+            userService.updateRoles(user, selectedRoles);
             refreshUsers();
             dialog.close();
             Notification.show("Role użytkownika zaktualizowane");
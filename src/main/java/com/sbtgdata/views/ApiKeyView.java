@@ -46,13 +46,11 @@ public class ApiKeyView extends VerticalLayout {
             return;
         }
 
-        currentApiKey = userService.getApiKey(currentUser.getId());
-        if (currentApiKey == null) {
-            currentApiKey = "";
-        }
+        // zapisany jest tylko skrót klucza, więc jawny klucz jest dostępny wyłącznie zaraz po wygenerowaniu
+        currentApiKey = "";
 
         apiKeyField = new TextField("Twój klucz API");
-        apiKeyField.setValue(maskApiKey(currentApiKey));
+        apiKeyField.setPlaceholder("Klucz jest ukryty, wygeneruj nowy, aby go zobaczyć");
         apiKeyField.setWidthFull();
         apiKeyField.setReadOnly(true);
 
@@ -84,7 +82,8 @@ public class ApiKeyView extends VerticalLayout {
                     isVisible = false;
                     apiKeyField.setValue(maskApiKey(newApiKey));
                     toggleVisibilityButton.setIcon(new Icon(VaadinIcon.EYE));
-                    Notification.show("Nowy klucz API został wygenerowany", 3000, Notification.Position.MIDDLE);
+                    Notification.show("Nowy klucz API został wygenerowany, skopiuj go teraz - nie będzie ponownie pokazany",
+                            5000, Notification.Position.MIDDLE);
                     confirmDialog.close();
                 } catch (IllegalArgumentException ex) {
                     Notification.show(ex.getMessage(), 3000, Notification.Position.MIDDLE);
@@ -119,7 +118,8 @@ public class ApiKeyView extends VerticalLayout {
         apiKeyField.getStyle().set("flex-grow", "1");
 
         add(title,
-                new Paragraph("Twój klucz API jest używany do autoryzacji przy wysyłaniu danych do przepływów."),
+                new Paragraph("Twój klucz API jest używany do autoryzacji przy wysyłaniu danych do przepływów "
+                        + "(nagłówek X-API-Key)."),
                 apiKeyLayout,
                 new HorizontalLayout(regenerateButton, copyButton));
     }
@@ -0,0 +1,139 @@
+package com.sbtgdata.views;
+
+import com.sbtgdata.data.BulkFlowOperation;
+import com.sbtgdata.data.BulkFlowResult;
+import com.sbtgdata.data.DataFlowService;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class BulkFlowActionBar extends HorizontalLayout {
+
+    private final DataFlowService dataFlowService;
+    private final Supplier<Collection<String>> selectedIds;
+    private final Supplier<String> ownerEmail;
+    private final Runnable onFinished;
+    private final List<Button> buttons;
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Span progressLabel = new Span();
+
+    public BulkFlowActionBar(DataFlowService dataFlowService, Supplier<Collection<String>> selectedIds,
+            Supplier<String> ownerEmail, Runnable onFinished) {
+        this.dataFlowService = dataFlowService;
+        this.selectedIds = selectedIds;
+        this.ownerEmail = ownerEmail;
+        this.onFinished = onFinished;
+
+        Button startButton = new Button("Uruchom zaznaczone", e -> run(BulkFlowOperation.START));
+        Button stopButton = new Button("Zatrzymaj zaznaczone", e -> run(BulkFlowOperation.STOP));
+        Button deleteButton = new Button("Usuń zaznaczone", e -> confirmDelete());
+        deleteButton.addThemeVariants(ButtonVariant.LUMO_ERROR);
+        buttons = List.of(startButton, stopButton, deleteButton);
+
+        progressBar.setWidth("200px");
+        progressBar.setVisible(false);
+        progressLabel.setVisible(false);
+
+        setAlignItems(Alignment.CENTER);
+        add(startButton, stopButton, deleteButton, progressBar, progressLabel);
+    }
+
+    private void confirmDelete() {
+        Collection<String> ids = selectedIds.get();
+        if (ids.isEmpty()) {
+            Notification.show("Zaznacz przepływy", 3000, Notification.Position.MIDDLE);
+            return;
+        }
+
+        Dialog confirmDialog = new Dialog();
+        confirmDialog.setHeaderTitle("Potwierdzenie usunięcia");
+        confirmDialog.add(new Paragraph("Czy na pewno chcesz usunąć " + ids.size()
+                + " przepływów? Uruchomione przepływy zostaną najpierw zatrzymane."));
+
+        Button confirmButton = new Button("Usuń", e -> {
+            confirmDialog.close();
+            run(BulkFlowOperation.DELETE, ids);
+        });
+        confirmButton.addThemeVariants(ButtonVariant.LUMO_ERROR);
+        Button cancelButton = new Button("Anuluj", e -> confirmDialog.close());
+
+        confirmDialog.getFooter().add(cancelButton, confirmButton);
+        confirmDialog.open();
+    }
+
+    private void run(BulkFlowOperation operation) {
+        Collection<String> ids = selectedIds.get();
+        if (ids.isEmpty()) {
+            Notification.show("Zaznacz przepływy", 3000, Notification.Position.MIDDLE);
+            return;
+        }
+        run(operation, ids);
+    }
+
+    private void run(BulkFlowOperation operation, Collection<String> ids) {
+        UI ui = UI.getCurrent();
+        int total = ids.size();
+        AtomicInteger done = new AtomicInteger();
+
+        setRunning(true);
+        progressBar.setMax(total);
+        progressBar.setValue(0);
+        progressLabel.setText("0 / " + total);
+
+        dataFlowService.runBulk(operation, ids, ownerEmail.get(), result -> ui.access(() -> {
+            int count = done.incrementAndGet();
+            progressBar.setValue(count);
+            progressLabel.setText(count + " / " + total);
+        })).whenComplete((results, ex) -> ui.access(() -> {
+            setRunning(false);
+            onFinished.run();
+            if (ex != null) {
+                Notification.show("Błąd: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
+                return;
+            }
+
+            List<BulkFlowResult> failures = results.stream()
+                    .filter(result -> !result.isSuccess())
+                    .collect(Collectors.toList());
+            if (failures.isEmpty()) {
+                Notification.show("Zakończono dla " + total + " przepływów", 3000, Notification.Position.MIDDLE);
+            } else {
+                showFailures(failures, total);
+            }
+        }));
+    }
+
+    private void showFailures(List<BulkFlowResult> failures, int total) {
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle("Nie powiodło się dla " + failures.size() + " z " + total + " przepływów");
+        dialog.setWidth("700px");
+
+        Grid<BulkFlowResult> failureGrid = new Grid<>();
+        failureGrid.addColumn(BulkFlowResult::getFlowId).setHeader("Przepływ").setAutoWidth(true);
+        failureGrid.addColumn(BulkFlowResult::getMessage).setHeader("Błąd").setFlexGrow(1);
+        failureGrid.setItems(failures);
+
+        dialog.add(failureGrid);
+        dialog.getFooter().add(new Button("Zamknij", e -> dialog.close()));
+        dialog.open();
+    }
+
+    private void setRunning(boolean running) {
+        buttons.forEach(button -> button.setEnabled(!running));
+        progressBar.setVisible(running);
+        progressLabel.setVisible(running);
+    }
+}
@@ -3,14 +3,17 @@ package com.sbtgdata.views;
 import com.sbtgdata.config.SecurityService;
 import com.sbtgdata.data.DataFlow;
 import com.sbtgdata.data.DataFlowService;
-import com.sbtgdata.data.FlowError;
+import com.sbtgdata.data.DataFlowSummary;
+import com.sbtgdata.data.ErrorSummary;
 import com.sbtgdata.data.FlowErrorService;
-import com.sbtgdata.data.User;
+import com.sbtgdata.data.RollupResolution;
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.datetimepicker.DateTimePicker;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H2;
@@ -28,6 +31,15 @@ import jakarta.annotation.security.PermitAll;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Route(value = "dataflows", layout = MainLayout.class)
 @PageTitle("Moje przepływy danych")
 @PermitAll
@@ -36,14 +48,13 @@ public class DataFlowView extends VerticalLayout {
     private final DataFlowService dataFlowService;
     private final SecurityService securityService;
     private final FlowErrorService flowErrorService;
-    private final Grid<DataFlow> grid = new Grid<>(DataFlow.class);
+    private final Grid<DataFlowSummary> grid = new Grid<>(DataFlowSummary.class);
+    private Map<String, Long> errorCounts = new HashMap<>();
+    private ZoneId clientZone = ZoneId.systemDefault();
 
     @Value("${entry.data.flow.url}")
     private String entryDataFlowUrl;
 
-    @Value("${data.retrieval.url}")
-    private String dataRetrievalUrl;
-
     @Autowired
     public DataFlowView(DataFlowService dataFlowService, SecurityService securityService,
             FlowErrorService flowErrorService) {
@@ -56,22 +67,42 @@ public class DataFlowView extends VerticalLayout {
 
         Button addButton = new Button("Dodaj nowy przepływ", e -> openFlowEditor(new DataFlow()));
 
-        add(new H2("Moje przepływy danych"), addButton, grid);
+        BulkFlowActionBar bulkActions = new BulkFlowActionBar(dataFlowService,
+                () -> grid.getSelectedItems().stream().map(DataFlowSummary::getId).collect(Collectors.toList()),
+                () -> securityService.getAuthenticatedUser().orElse(""),
+                () -> {
+                    grid.deselectAll();
+                    updateList();
+                });
+
+        add(new H2("Moje przepływy danych"), addButton, bulkActions, grid);
         updateList();
     }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        attachEvent.getUI().getPage().retrieveExtendedClientDetails(details -> {
+            try {
+                clientZone = ZoneId.of(details.getTimeZoneId());
+            } catch (RuntimeException ex) {
+                clientZone = ZoneId.systemDefault();
+            }
+        });
+    }
+
     private void configureGrid() {
+        grid.setSelectionMode(Grid.SelectionMode.MULTI);
         grid.setColumns("name");
         grid.getColumnByKey("name").setHeader("Nazwa").setResizable(true).setAutoWidth(true).setFlexGrow(1);
 
-        grid.addColumn(flow -> flow.getPackages() != null && !flow.getPackages().isEmpty() ? "Tak"
-                : "Nie")
+        grid.addColumn(flow -> flow.hasPackages() ? "Tak" : "Nie")
                 .setHeader("Dodatkowe biblioteki")
                 .setResizable(true)
                 .setAutoWidth(true)
                 .setFlexGrow(0);
 
-        grid.addColumn(DataFlow::getStatus)
+        grid.addColumn(DataFlowSummary::getStatus)
                 .setHeader("Status")
                 .setResizable(true)
                 .setAutoWidth(true)
@@ -81,9 +112,8 @@ public class DataFlowView extends VerticalLayout {
             if (flow.getId() == null) {
                 return new Paragraph("-");
             }
-            User currentUser = securityService.getCurrentUser();
-            String apiKey = currentUser != null ? currentUser.getApiKey() : "";
-            String url = entryDataFlowUrl + "/" + flow.getId() + "?API_KEY=" + apiKey;
+            // klucz API przekazuje się w nagłówku X-API-Key, nie w adresie
+            String url = entryDataFlowUrl + "/flows/" + flow.getId() + "/data";
 
             String flowIdLast4 = flow.getId().length() >= 4
                     ? flow.getId().substring(flow.getId().length() - 4)
@@ -134,7 +164,7 @@ public class DataFlowView extends VerticalLayout {
             if (flow.getId() == null) {
                 return new Paragraph("-");
             }
-            long errorCount = flowErrorService.getUniqueErrorsByFlowId(flow.getId()).size();
+            long errorCount = errorCounts.getOrDefault(flow.getId(), 0L);
             if (errorCount > 0) {
                 Button errorsButton = new Button("Błędy (" + errorCount + ")",
                         new Icon(VaadinIcon.EXCLAMATION_CIRCLE_O));
@@ -188,9 +218,11 @@ public class DataFlowView extends VerticalLayout {
                 .setFlexGrow(0);
 
         grid.addComponentColumn(flow -> {
-            boolean isRunning = "RUNNING".equals(flow.getStatus());
+            boolean isRunning = flow.isActive();
+            boolean isStarted = DataFlow.STATUS_RUNNING.equals(flow.getStatus())
+                    || DataFlow.STATUS_STARTING.equals(flow.getStatus());
 
-            Button editButton = new Button("Edytuj", e -> openFlowEditor(flow));
+            Button editButton = new Button("Edytuj", e -> editFlow(flow));
             editButton.setEnabled(!isRunning);
             if (isRunning) {
                 editButton.getElement().setAttribute("title", "Zatrzymaj przepływ aby edytować");
@@ -198,7 +230,7 @@ public class DataFlowView extends VerticalLayout {
 
             Button deleteButton = new Button("Usuń", e -> {
                 try {
-                    dataFlowService.delete(flow);
+                    dataFlowService.deleteById(flow.getId());
                     updateList();
                     Notification.show("Przepływ usunięty");
                 } catch (IllegalArgumentException ex) {
@@ -211,12 +243,12 @@ public class DataFlowView extends VerticalLayout {
             }
 
             Button toggleButton;
-            if (isRunning) {
+            if (isStarted) {
                 toggleButton = new Button("Zatrzymaj przepływ", e -> {
                     try {
-                        dataFlowService.stopFlow(flow.getId());
+                        boolean requested = dataFlowService.stopFlow(flow.getId());
                         updateList();
-                        Notification.show("Przepływ zatrzymany");
+                        Notification.show(requested ? "Zatrzymywanie przepływu..." : "Przepływ jest już zatrzymywany");
                     } catch (Exception ex) {
                         Notification.show("Błąd: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
                     }
@@ -224,9 +256,9 @@ public class DataFlowView extends VerticalLayout {
             } else {
                 toggleButton = new Button("Uruchom przepływ", e -> {
                     try {
-                        dataFlowService.startFlow(flow.getId());
+                        boolean requested = dataFlowService.startFlow(flow.getId());
                         updateList();
-                        Notification.show("Przepływ uruchomiony");
+                        Notification.show(requested ? "Uruchamianie przepływu..." : "Przepływ jest już uruchamiany");
                     } catch (Exception ex) {
                         Notification.show("Błąd: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
                     }
@@ -246,10 +278,21 @@ public class DataFlowView extends VerticalLayout {
     private void updateList() {
         String currentUserEmail = securityService.getAuthenticatedUser().orElse(null);
         if (currentUserEmail != null) {
-            grid.setItems(dataFlowService.findByOwnerEmail(currentUserEmail));
+            List<DataFlowSummary> flows = dataFlowService.findSummariesByOwnerEmail(currentUserEmail);
+            errorCounts = flowErrorService.countUniqueErrorsByFlowIds(flows.stream()
+                    .map(DataFlowSummary::getId)
+                    .collect(Collectors.toList()));
+            grid.setItems(flows);
         }
     }
 
+    private void editFlow(DataFlowSummary summary) {
+        dataFlowService.findById(summary.getId()).ifPresentOrElse(this::openFlowEditor, () -> {
+            Notification.show("Przepływ nie istnieje", 3000, Notification.Position.MIDDLE);
+            updateList();
+        });
+    }
+
     private void openFlowEditor(DataFlow flow) {
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle(flow.getId() == null ? "Dodaj nowy przepływ" : "Edytuj przepływ");
@@ -315,22 +358,23 @@ public class DataFlowView extends VerticalLayout {
         dialog.open();
     }
 
-    private void openErrorsDialog(DataFlow flow) {
+    private void openErrorsDialog(DataFlowSummary flow) {
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle("Błędy przepływu: " + flow.getName());
         dialog.setWidth("800px");
 
         VerticalLayout dialogLayout = new VerticalLayout();
-        Grid<FlowError> errorGrid = new Grid<>(FlowError.class);
-        errorGrid.setColumns();
-        errorGrid.addColumn(error -> {
-            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter
-                    .ofPattern("yyyy-MM-dd HH:mm:ss");
-            return error.getDate() != null ? error.getDate().format(formatter) : "";
-        }).setHeader("Data");
-        errorGrid.addColumn(FlowError::getMessage).setHeader("Komunikat błędu");
-
-        errorGrid.setItems(flowErrorService.getUniqueErrorsByFlowId(flow.getId()));
+        Grid<ErrorSummary> errorGrid = new Grid<>(ErrorSummary.class, false);
+        java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter
+                .ofPattern("yyyy-MM-dd HH:mm:ss");
+        errorGrid.addColumn(error -> error.getFirstSeen() != null ? error.getFirstSeen().format(formatter) : "")
+                .setHeader("Pierwsze wystąpienie").setAutoWidth(true).setFlexGrow(0);
+        errorGrid.addColumn(error -> error.getLastSeen() != null ? error.getLastSeen().format(formatter) : "")
+                .setHeader("Ostatnie wystąpienie").setAutoWidth(true).setFlexGrow(0);
+        errorGrid.addColumn(ErrorSummary::getCount).setHeader("Liczba").setAutoWidth(true).setFlexGrow(0);
+        errorGrid.addColumn(ErrorSummary::getMessage).setHeader("Komunikat błędu").setFlexGrow(1);
+
+        errorGrid.setItems(flowErrorService.getErrorSummariesByFlowId(flow.getId()));
 
         dialogLayout.add(errorGrid);
 
@@ -341,7 +385,7 @@ public class DataFlowView extends VerticalLayout {
         dialog.open();
     }
 
-    private void openDownloadDialog(DataFlow flow) {
+    private void openDownloadDialog(DataFlowSummary flow) {
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle("Pobierz dane CSV: " + flow.getName());
         dialog.setWidth("500px");
@@ -351,56 +395,64 @@ public class DataFlowView extends VerticalLayout {
         Checkbox downloadAllCheckbox = new Checkbox("Pobierz wszystkie dane");
         downloadAllCheckbox.setValue(false);
 
-        TextField startDateField = new TextField("Data początkowa (YYYY-MM-DD HH:MM:SS)");
-        startDateField.setPlaceholder("2026-01-08 14:30:00");
-        startDateField.setWidthFull();
+        LocalDateTime now = LocalDateTime.now(clientZone).withNano(0);
+        DateTimePicker startPicker = new DateTimePicker("Data początkowa");
+        startPicker.setStep(Duration.ofSeconds(1));
+        startPicker.setValue(now.minusHours(1));
+        startPicker.setWidthFull();
+
+        DateTimePicker endPicker = new DateTimePicker("Data końcowa");
+        endPicker.setStep(Duration.ofSeconds(1));
+        endPicker.setValue(now);
+        endPicker.setWidthFull();
+
+        startPicker.addValueChangeListener(e -> endPicker.setMin(e.getValue()));
+        endPicker.addValueChangeListener(e -> startPicker.setMax(e.getValue()));
+
+        ComboBox<RollupResolution> resolutionBox = new ComboBox<>("Rodzaj danych");
+        resolutionBox.setItems(RollupResolution.values());
+        resolutionBox.setItemLabelGenerator(resolution -> switch (resolution) {
+            case MINUTE -> "Agregaty minutowe";
+            case HOUR -> "Agregaty godzinowe";
+            case DAY -> "Agregaty dzienne";
+        });
+        resolutionBox.setPlaceholder("Surowe rekordy");
+        resolutionBox.setClearButtonVisible(true);
+        resolutionBox.setHelperText("Agregaty zawierają liczbę rekordów oraz min/max/sumę/średnią pól liczbowych");
+        resolutionBox.setWidthFull();
 
-        TextField endDateField = new TextField("Data końcowa (YYYY-MM-DD HH:MM:SS)");
-        endDateField.setPlaceholder("2026-01-08 15:30:00");
-        endDateField.setWidthFull();
+        Checkbox gzipCheckbox = new Checkbox("Kompresuj plik (gzip)");
 
         downloadAllCheckbox.addValueChangeListener(e -> {
             boolean downloadAll = e.getValue();
-            startDateField.setEnabled(!downloadAll);
-            endDateField.setEnabled(!downloadAll);
+            startPicker.setEnabled(!downloadAll);
+            endPicker.setEnabled(!downloadAll);
         });
 
-        dialogLayout.add(downloadAllCheckbox, startDateField, endDateField);
+        dialogLayout.add(downloadAllCheckbox, startPicker, endPicker, resolutionBox, gzipCheckbox);
 
         Button downloadButton = new Button("Pobierz", e -> {
-            User currentUser = securityService.getCurrentUser();
-            String apiKey = currentUser != null ? currentUser.getApiKey() : "";
-
-            String url = dataRetrievalUrl + "/flows/" + flow.getId() + "/data?API_KEY=" + apiKey;
+            String url = "flows/" + flow.getId() + "/data?gzip=" + gzipCheckbox.getValue();
+            if (resolutionBox.getValue() != null) {
+                url += "&resolution=" + resolutionBox.getValue().name();
+            }
 
-            if (!downloadAllCheckbox.getValue()) {
-                if (startDateField.getValue() == null || startDateField.getValue().trim().isEmpty() ||
-                        endDateField.getValue() == null || endDateField.getValue().trim().isEmpty()) {
+            if (downloadAllCheckbox.getValue()) {
+                url += "&to=" + Instant.now();
+            } else {
+                if (startPicker.getValue() == null || endPicker.getValue() == null) {
                     Notification.show("Wybierz daty lub zaznacz 'Pobierz wszystkie dane'",
                             3000, Notification.Position.MIDDLE);
                     return;
                 }
-
-                try {
-                    java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter
-                            .ofPattern("yyyy-MM-dd HH:mm:ss");
-                    java.time.LocalDateTime startDateTime = java.time.LocalDateTime
-                            .parse(startDateField.getValue().trim(), formatter);
-                    java.time.LocalDateTime endDateTime = java.time.LocalDateTime.parse(endDateField.getValue().trim(),
-                            formatter);
-
-                    String startDate = startDateTime.format(formatter);
-                    String endDate = endDateTime.format(formatter);
-
-                    String encodedStartDate = startDate.replace(" ", "%20");
-                    String encodedEndDate = endDate.replace(" ", "%20");
-
-                    url += "&start_date=" + encodedStartDate + "&end_date=" + encodedEndDate;
-                } catch (java.time.format.DateTimeParseException ex) {
-                    Notification.show("Nieprawidłowy format daty. Użyj: YYYY-MM-DD HH:MM:SS (np. 2026-01-08 14:30:00)",
-                            5000, Notification.Position.MIDDLE);
+                if (!startPicker.getValue().isBefore(endPicker.getValue())) {
+                    Notification.show("Data początkowa musi być wcześniejsza niż data końcowa",
+                            3000, Notification.Position.MIDDLE);
                     return;
                 }
+
+                url += "&from=" + startPicker.getValue().atZone(clientZone).toInstant()
+                        + "&to=" + endPicker.getValue().atZone(clientZone).toInstant();
             }
 
             final String finalUrl = url;
@@ -13,22 +13,31 @@ import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import jakarta.annotation.security.PermitAll;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Route(value = "errors", layout = MainLayout.class)
 @PageTitle("Błędy")
 @PermitAll
 public class ErrorsView extends VerticalLayout {
 
+    private static final int MAX_PAGE_BOUNDARIES = 1000;
+
     private final FlowErrorService flowErrorService;
     private final SecurityService securityService;
     private final Grid<FlowError> grid = new Grid<>(FlowError.class);
+    private final Map<Integer, FlowError> pageBoundaries = new HashMap<>();
+    private boolean boundariesAscending;
 
     @Autowired
     public ErrorsView(FlowErrorService flowErrorService, SecurityService securityService) {
@@ -47,9 +56,10 @@ public class ErrorsView extends VerticalLayout {
         grid.addColumn(error -> {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             return error.getDate() != null ? error.getDate().format(formatter) : "";
-        }).setHeader("Data").setWidth("180px").setFlexGrow(0);
+        }).setHeader("Data").setKey("date").setSortProperty("date").setWidth("180px").setFlexGrow(0);
 
         grid.addColumn(FlowError::getFlowId).setHeader("ID Przepływu").setWidth("200px");
+        grid.addColumn(FlowError::getCount).setHeader("Liczba").setWidth("100px").setFlexGrow(0);
         grid.addColumn(FlowError::getMessage).setHeader("Komunikat błędu").setAutoWidth(true).setFlexGrow(1);
 
         grid.addComponentColumn(error -> {
@@ -58,7 +68,8 @@ public class ErrorsView extends VerticalLayout {
             deleteButton.addClickListener(e -> {
                 try {
                     flowErrorService.deleteError(error.getId());
-                    updateList();
+                    pageBoundaries.clear();
+                    grid.getDataProvider().refreshAll();
                     Notification.show("Błąd usunięty", 2000, Notification.Position.MIDDLE);
                 } catch (Exception ex) {
                     Notification.show("Błąd podczas usuwania: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
@@ -71,8 +82,32 @@ public class ErrorsView extends VerticalLayout {
     private void updateList() {
         User currentUser = securityService.getCurrentUser();
         if (currentUser != null) {
-            List<FlowError> errors = flowErrorService.getErrorsByUserId(currentUser.getId());
-            grid.setItems(errors);
+            String userId = currentUser.getId();
+            pageBoundaries.clear();
+            grid.setItems(query -> fetchPage(userId, query.getOffset(), query.getLimit(), query.getSortOrders()))
+                    .setItemCountEstimate((int) Math.max(1, flowErrorService.estimateErrorCountByUserId(userId)));
+        }
+    }
+
+    private Stream<FlowError> fetchPage(String userId, int offset, int limit, List<QuerySortOrder> sortOrders) {
+        boolean ascending = sortOrders.stream()
+                .filter(order -> "date".equals(order.getSorted()))
+                .findFirst()
+                .map(order -> order.getDirection() == SortDirection.ASCENDING)
+                .orElse(false);
+        if (ascending != boundariesAscending) {
+            pageBoundaries.clear();
+            boundariesAscending = ascending;
+        }
+
+        List<FlowError> page = flowErrorService.getErrorsPageByUserId(userId, pageBoundaries.get(offset), offset,
+                limit, ascending);
+        if (pageBoundaries.size() > MAX_PAGE_BOUNDARIES) {
+            pageBoundaries.clear();
+        }
+        if (!page.isEmpty()) {
+            pageBoundaries.put(offset + page.size(), page.get(page.size() - 1));
         }
+        return page.stream();
     }
 }
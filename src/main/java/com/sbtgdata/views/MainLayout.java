@@ -1,9 +1,9 @@
 package com.sbtgdata.views;
 
 import com.sbtgdata.config.SecurityService;
-import com.sbtgdata.data.RoleRepository;
+import com.sbtgdata.data.RolePermissionCache;
+import com.sbtgdata.data.ViewDescriptor;
 import com.sbtgdata.data.ViewService;
-import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.applayout.DrawerToggle;
 import com.vaadin.flow.component.button.Button;
@@ -16,20 +16,19 @@ import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.RouterLink;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 public class MainLayout extends AppLayout implements BeforeEnterObserver {
 
     private final SecurityService securityService;
-    private final RoleRepository roleRepository;
+    private final RolePermissionCache rolePermissionCache;
     private final ViewService viewService;
 
     @Autowired
-    public MainLayout(SecurityService securityService, RoleRepository roleRepository, ViewService viewService) {
+    public MainLayout(SecurityService securityService, RolePermissionCache rolePermissionCache,
+            ViewService viewService) {
         this.securityService = securityService;
-        this.roleRepository = roleRepository;
+        this.rolePermissionCache = rolePermissionCache;
         this.viewService = viewService;
 
         try {
@@ -72,66 +71,31 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
         VerticalLayout drawer = new VerticalLayout();
 
         Set<String> allowedViews = getAllowedViewsForCurrentUser();
-        Map<String, String> allViews = viewService.getAllViews();
         boolean isAdmin = securityService.hasRole("ADMIN");
 
-        allViews.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue())
-                .forEach(entry -> {
-                    String className = entry.getKey();
-                    String viewName = entry.getValue();
-
-                    if (className.contains("LoginView") ||
-                            className.contains("RegisterView") ||
-                            className.contains("WelcomeView") ||
-                            className.contains("RootView")) {
-                        return;
-                    }
-
-                    if (className.contains("RoleManagementView") && !isAdmin) {
-                        return;
-                    }
-
-                    if (isAdmin || allowedViews.contains(className)) {
-                        try {
-                            Class<?> clazz = Class.forName(className);
-                            if (Component.class.isAssignableFrom(clazz)) {
-                                @SuppressWarnings("unchecked")
-                                Class<? extends Component> viewClass = (Class<? extends Component>) clazz;
-                                drawer.add(new RouterLink(viewName, viewClass));
-                            }
-                        } catch (ClassNotFoundException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
+        for (ViewDescriptor view : viewService.getViews()) {
+            if (!view.navigable() || (view.adminOnly() && !isAdmin)) {
+                continue;
+            }
+            if (isAdmin || allowedViews.contains(view.className())) {
+                drawer.add(new RouterLink(view.title(), view.viewClass()));
+            }
+        }
 
         addToDrawer(drawer);
     }
 
     private Set<String> getAllowedViewsForCurrentUser() {
-        Set<String> allowedViews = new HashSet<>();
         var user = securityService.getCurrentUser();
-        if (user != null && user.getRoles() != null) {
-            for (String roleName : user.getRoles()) {
-                roleRepository.findByName(roleName).ifPresent(role -> {
-                    if (role.getAllowedViews() != null) {
-                        allowedViews.addAll(role.getAllowedViews());
-                    }
-                });
-            }
-        }
-        return allowedViews;
+        return user != null ? rolePermissionCache.getAllowedViews(user.getRoles()) : Set.of();
     }
 
     @Override
     public void beforeEnter(BeforeEnterEvent event) {
         Class<?> targetClass = event.getNavigationTarget();
-        String targetClassName = targetClass.getName();
+        ViewDescriptor targetView = viewService.getView(targetClass);
 
-        if (targetClassName.contains("LoginView") ||
-                targetClassName.contains("RegisterView") ||
-                targetClassName.contains("WelcomeView")) {
+        if (targetView != null && targetView.openToAll()) {
             return;
         }
 
@@ -140,7 +104,7 @@ public class MainLayout extends AppLayout implements BeforeEnterObserver {
         }
 
         Set<String> allowedViews = getAllowedViewsForCurrentUser();
-        if (!allowedViews.contains(targetClassName)) {
+        if (!allowedViews.contains(targetClass.getName())) {
             event.rerouteTo(WelcomeView.class);
         }
     }
@@ -1,6 +1,7 @@
 package com.sbtgdata.views;
 
 import com.sbtgdata.data.Role;
+import com.sbtgdata.data.RolePermissionCache;
 import com.sbtgdata.data.RoleRepository;
 import com.sbtgdata.data.ViewService;
 import com.vaadin.flow.component.button.Button;
@@ -26,12 +27,15 @@ public class RoleManagementView extends VerticalLayout {
 
     private final RoleRepository roleRepository;
     private final ViewService viewService;
+    private final RolePermissionCache rolePermissionCache;
     private final Grid<Role> grid = new Grid<>(Role.class);
 
     @Autowired
-    public RoleManagementView(RoleRepository roleRepository, ViewService viewService) {
+    public RoleManagementView(RoleRepository roleRepository, ViewService viewService,
+            RolePermissionCache rolePermissionCache) {
         this.roleRepository = roleRepository;
         this.viewService = viewService;
+        this.rolePermissionCache = rolePermissionCache;
 
         setSizeFull();
         configureGrid();
@@ -50,6 +54,7 @@ public class RoleManagementView extends VerticalLayout {
             Button editButton = new Button("Edytuj", e -> openRoleEditor(role));
             Button deleteButton = new Button("Usuń", e -> {
                 roleRepository.delete(role);
+                rolePermissionCache.invalidate();
                 updateList();
                 Notification.show("Rola usunięta");
             });
@@ -98,6 +103,7 @@ public class RoleManagementView extends VerticalLayout {
             role.setName(nameField.getValue());
             role.setAllowedViews(viewsGroup.getValue());
             roleRepository.save(role);
+            rolePermissionCache.invalidate();
             updateList();
             dialog.close();
             Notification.show("Rola zapisana");
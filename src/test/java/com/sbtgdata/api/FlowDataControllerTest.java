@@ -0,0 +1,201 @@
+package com.sbtgdata.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sbtgdata.data.ApiKeyPrincipal;
+import com.sbtgdata.data.ApiKeyService;
+import com.sbtgdata.data.FlowDataService;
+import com.sbtgdata.data.FlowIngestService;
+import com.sbtgdata.data.FlowRollupService;
+import com.sbtgdata.data.IngestRejectedException;
+import com.sbtgdata.data.RangeSnapshot;
+import com.sbtgdata.data.User;
+import com.sbtgdata.data.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlowDataControllerTest {
+
+    @Mock
+    private ApiKeyService apiKeyService;
+
+    @Mock
+    private FlowIngestService flowIngestService;
+
+    @Mock
+    private FlowDataService flowDataService;
+
+    @Mock
+    private FlowRollupService flowRollupService;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private FlowDataController controller;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(controller, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(controller, "maxRecordsPerRequest", 3);
+    }
+
+    @Test
+    void testReadRecords_AcceptsObjectArrayAndNdjson() throws Exception {
+        assertEquals(List.of(Map.of("a", 1)), controller.readRecords(body("{\"a\":1}")));
+        assertEquals(2, controller.readRecords(body("[{\"a\":1},{\"a\":2}]")).size());
+        assertEquals(3, controller.readRecords(body("{\"a\":1}\n{\"a\":2}\n{\"a\":3}\n")).size());
+    }
+
+    @Test
+    void testIngest_RejectsUnknownKey() {
+        when(apiKeyService.resolve("bad")).thenReturn(Optional.empty());
+
+        ResponseEntity<Map<String, Object>> response = controller.ingest("flow-1", "bad", null, body("{}"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(flowIngestService);
+    }
+
+    @Test
+    void testIngest_LimitsRecordsPerRequest() {
+        when(apiKeyService.resolve(anyString())).thenReturn(Optional.of(new ApiKeyPrincipal("user-1", "a@b.c")));
+        when(flowIngestService.checkAccess("flow-1", "user-1")).thenReturn(FlowIngestService.FlowAccess.ALLOWED);
+
+        ResponseEntity<Map<String, Object>> response = controller.ingest("flow-1", null, "key",
+                body("[{},{},{},{}]"));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+        verify(flowIngestService, never()).enqueue(eq("flow-1"), anyString(), any());
+    }
+
+    @Test
+    void testIngest_ReturnsTooManyRequestsWhenRateLimited() {
+        when(apiKeyService.resolve("key")).thenReturn(Optional.of(new ApiKeyPrincipal("user-1", "a@b.c")));
+        when(flowIngestService.checkAccess("flow-1", "user-1")).thenReturn(FlowIngestService.FlowAccess.ALLOWED);
+        doThrow(new IngestRejectedException("limit", FlowIngestService.REASON_FLOW_RATE, Duration.ofMillis(1500)))
+                .when(flowIngestService).enqueue(eq("flow-1"), eq("user-1"), any());
+
+        ResponseEntity<Map<String, Object>> response = controller.ingest("flow-1", "key", null, body("{\"a\":1}"));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("2", response.getHeaders().getFirst("Retry-After"));
+    }
+
+    private void mockExport(Instant to) throws Exception {
+        when(apiKeyService.resolve("key")).thenReturn(Optional.of(new ApiKeyPrincipal("user-1", "a@b.c")));
+        when(flowIngestService.checkAccess("flow-1", "user-1")).thenReturn(FlowIngestService.FlowAccess.INACTIVE);
+        when(flowDataService.snapshotRange("flow-1", null, to)).thenReturn(new RangeSnapshot(2, "2:a:b"));
+        lenient().when(flowDataService.writeCsv(eq("flow-1"), isNull(), eq(to), anyLong(), any()))
+                .thenAnswer(invocation -> {
+                    String rows = invocation.getArgument(3, Long.class) == 0 ? "ts,a\n1,2\n3,4\n" : "3,4\n";
+                    invocation.getArgument(4, OutputStream.class).write(rows.getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+    }
+
+    @Test
+    void testExport_ResumesFromRecordOffsetWhenIfRangeMatches() throws Exception {
+        Instant to = Instant.parse("2026-01-08T15:00:00Z");
+        mockExport(to);
+        ResponseEntity<StreamingResponseBody> full = controller.export("flow-1", "key", null, null, to, null, false,
+                null, null, null);
+        String etag = full.getHeaders().getETag();
+
+        ResponseEntity<StreamingResponseBody> response = controller.export("flow-1", "key", null, null, to, null, false,
+                "records=1-", etag, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("records 1-1/2", response.getHeaders().getFirst("Content-Range"));
+        assertEquals("records", response.getHeaders().getFirst("Accept-Ranges"));
+        assertEquals("3,4\n", out.toString(StandardCharsets.UTF_8));
+        verify(flowDataService).writeCsv(eq("flow-1"), isNull(), eq(to), eq(1L), any());
+    }
+
+    @Test
+    void testExport_IgnoresRangeWithoutMatchingIfRange() throws Exception {
+        Instant to = Instant.parse("2026-01-08T15:00:00Z");
+        mockExport(to);
+
+        ResponseEntity<StreamingResponseBody> bare = controller.export("flow-1", "key", null, null, to, null, false,
+                "records=1-", null, null);
+        ResponseEntity<StreamingResponseBody> stale = controller.export("flow-1", "key", null, null, to, null, false,
+                "records=1-", "\"stale\"", null);
+        ResponseEntity<StreamingResponseBody> bytes = controller.export("flow-1", "key", null, null, to, null, false,
+                "bytes=5-", bare.getHeaders().getETag(), null);
+
+        assertEquals(HttpStatus.OK, bare.getStatusCode());
+        assertEquals(HttpStatus.OK, stale.getStatusCode());
+        assertEquals(HttpStatus.OK, bytes.getStatusCode());
+        assertNull(stale.getHeaders().getFirst("Content-Range"));
+    }
+
+    @Test
+    void testExport_StopsOnFirstWriteFailureAndRejectsOffsetPastEnd() throws Exception {
+        Instant to = Instant.parse("2026-01-08T15:00:00Z");
+        mockExport(to);
+        ResponseEntity<StreamingResponseBody> first = controller.export("flow-1", "key", null, null, to, null, false,
+                null, null, null);
+        String etag = first.getHeaders().getETag();
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("rozłączono");
+            }
+        };
+
+        assertThrows(IOException.class, () -> first.getBody().writeTo(broken));
+        ResponseEntity<StreamingResponseBody> past = controller.export("flow-1", "key", null, null, to, null, false,
+                "records=2-", etag, null);
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, past.getStatusCode());
+        assertEquals("records */2", past.getHeaders().getFirst("Content-Range"));
+    }
+
+    @Test
+    void testExport_UsesSessionUserWithoutApiKey() throws Exception {
+        User user = new User("a@b.c", "password", null);
+        user.setId("user-1");
+        when(userService.findByEmail("a@b.c")).thenReturn(Optional.of(user));
+        when(flowIngestService.checkAccess("flow-1", "user-1")).thenReturn(FlowIngestService.FlowAccess.NOT_FOUND);
+
+        ResponseEntity<StreamingResponseBody> response = controller.export("flow-1", null, null, null, null, null, true,
+                null, null, () -> "a@b.c");
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verify(flowDataService, never()).writeCsv(anyString(), any(), any(), anyLong(), any());
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
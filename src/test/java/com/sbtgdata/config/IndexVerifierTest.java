@@ -0,0 +1,150 @@
+package com.sbtgdata.config;
+
+import com.sbtgdata.data.DataFlow;
+import com.sbtgdata.data.Role;
+import com.sbtgdata.data.User;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IndexVerifierTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private MongoPersistentEntityIndexResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        mappingContext.setInitialEntitySet(Set.copyOf(IndexVerifier.INDEXED_ENTITIES));
+        mappingContext.afterPropertiesSet();
+        resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+    }
+
+    @Test
+    void testDataFlowIndexes_CoverOwnerQueries() {
+        List<Document> keys = indexKeys(DataFlow.class);
+
+        assertTrue(keys.contains(new Document("user_id", 1).append("status", 1)));
+        assertTrue(keys.contains(new Document("ownerEmail", 1)));
+    }
+
+    @Test
+    void testUserAndRoleIndexes_AreUnique() {
+        assertTrue(indexOptions(User.class, "email").getBoolean("unique", false));
+        assertTrue(indexOptions(Role.class, "name").getBoolean("unique", false));
+    }
+
+    @Test
+    void testVerifyCollection_CreatesMissingIndexWithCreateIndex() {
+        IndexOperations indexOps = indexOpsWith();
+        statsReturn();
+
+        IndexVerifier.IndexReport report = verifier(true).verifyCollection(Role.class, "roles", resolver);
+
+        ArgumentCaptor<IndexDefinition> created = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexOps).createIndex(created.capture());
+        assertEquals(new Document("name", 1), created.getValue().getIndexKeys());
+        assertEquals(List.of("name_1"), report.created);
+        assertTrue(report.missing.isEmpty());
+    }
+
+    @Test
+    void testVerifyCollection_ReportsMissingWithoutCreating() {
+        IndexOperations indexOps = indexOpsWith();
+        statsReturn();
+
+        IndexVerifier.IndexReport report = verifier(false).verifyCollection(Role.class, "roles", resolver);
+
+        verify(indexOps, never()).createIndex(any());
+        assertEquals(List.of("{\"name\": 1}"), report.missing);
+    }
+
+    @Test
+    void testVerifyCollection_NonUniqueIndexDoesNotSatisfyUniqueDeclaration() {
+        IndexOperations indexOps = indexOpsWith(new Document("name", "name_1").append("key", new Document("name", 1)));
+        statsReturn(stats("name_1", new Document("name", 1), 12));
+
+        IndexVerifier.IndexReport report = verifier(true).verifyCollection(Role.class, "roles", resolver);
+
+        assertEquals(List.of("name_1"), report.conflicting);
+        verify(indexOps, never()).createIndex(any());
+    }
+
+    @Test
+    void testVerifyCollection_ReportsUndeclaredAndUnusedIndexes() {
+        indexOpsWith(new Document("name", "name_1").append("key", new Document("name", 1)).append("unique", true),
+                new Document("name", "legacy_1").append("key", new Document("legacy", 1)));
+        statsReturn(stats("_id_", new Document("_id", 1), 0),
+                stats("name_1", new Document("name", 1), 0),
+                stats("legacy_1", new Document("legacy", 1), 7));
+
+        IndexVerifier.IndexReport report = verifier(true).verifyCollection(Role.class, "roles", resolver);
+
+        assertTrue(report.conflicting.isEmpty());
+        assertTrue(report.created.isEmpty());
+        assertEquals(List.of("legacy_1"), report.undeclared);
+        assertEquals(List.of("name_1"), report.unused);
+    }
+
+    private IndexVerifier verifier(boolean createMissing) {
+        IndexVerifier verifier = new IndexVerifier(mongoTemplate);
+        ReflectionTestUtils.setField(verifier, "createMissing", createMissing);
+        return verifier;
+    }
+
+    private IndexOperations indexOpsWith(Document... indexes) {
+        IndexOperations indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(Role.class)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(Arrays.stream(indexes).map(IndexInfo::indexInfoOf).toList());
+        lenient().when(indexOps.createIndex(any())).thenReturn("name_1");
+        return indexOps;
+    }
+
+    private void statsReturn(Document... stats) {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("roles"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(stats), new Document()));
+    }
+
+    private Document stats(String name, Document key, long ops) {
+        return new Document("name", name)
+                .append("key", key)
+                .append("accesses", new Document("ops", ops).append("since", new Date()));
+    }
+
+    private List<Document> indexKeys(Class<?> type) {
+        return StreamSupport.stream(resolver.resolveIndexFor(type).spliterator(), false)
+                .map(IndexDefinition::getIndexKeys)
+                .toList();
+    }
+
+    private Document indexOptions(Class<?> type, String field) {
+        return StreamSupport.stream(resolver.resolveIndexFor(type).spliterator(), false)
+                .filter(definition -> definition.getIndexKeys().containsKey(field))
+                .map(IndexDefinition::getIndexOptions)
+                .findFirst()
+                .orElseThrow();
+    }
+}
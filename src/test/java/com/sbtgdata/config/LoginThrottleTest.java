@@ -0,0 +1,95 @@
+package com.sbtgdata.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final LoginThrottle throttle = new LoginThrottle(2, 3, Duration.ofMinutes(15), 4, now::get);
+
+    @Test
+    void testTryAcquire_AccountLimitAppliesAcrossIps() {
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.1"));
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("JAN@example.com", "10.0.0.2"));
+
+        assertEquals(LoginThrottle.Decision.ACCOUNT_BLOCKED, throttle.tryAcquire("jan@example.com", "10.0.0.3"));
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("anna@example.com", "10.0.0.3"));
+    }
+
+    @Test
+    void testTryAcquire_AccountDelayGrowsAfterLimit() {
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        throttle.tryAcquire("jan@example.com", "10.0.0.2");
+
+        now.addAndGet(999);
+        assertEquals(LoginThrottle.Decision.ACCOUNT_BLOCKED, throttle.tryAcquire("jan@example.com", "10.0.0.3"));
+        now.addAndGet(1);
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.3"));
+
+        now.addAndGet(1999);
+        assertEquals(LoginThrottle.Decision.ACCOUNT_BLOCKED, throttle.tryAcquire("jan@example.com", "10.0.0.4"));
+        now.addAndGet(1);
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.4"));
+    }
+
+    @Test
+    void testTryAcquire_IpBlockedAcrossAccounts() {
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("a@example.com", "10.0.0.1"));
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("b@example.com", "10.0.0.1"));
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("c@example.com", "10.0.0.1"));
+
+        assertEquals(LoginThrottle.Decision.IP_BLOCKED, throttle.tryAcquire("d@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void testRecordSuccess_ClearsAccountAndReturnsIpReservation() {
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        throttle.recordSuccess("jan@example.com", "10.0.0.1");
+
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.1"));
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("anna@example.com", "10.0.0.1"));
+        assertEquals(LoginThrottle.Decision.IP_BLOCKED, throttle.tryAcquire("ewa@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void testRelease_DoesNotCountAbortedAttempt() {
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        throttle.release("jan@example.com", "10.0.0.1");
+
+        assertEquals(0, throttle.trackedKeys());
+    }
+
+    @Test
+    void testEvictExpired_RemovesOnlyClosedWindows() {
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        throttle.tryAcquire("anna@example.com", "10.0.0.2");
+        now.addAndGet(Duration.ofMinutes(6).toMillis());
+
+        throttle.evictExpired();
+
+        assertEquals(2, throttle.trackedKeys());
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.1"));
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void testTryAcquire_TrackingEvictsOldestKeys() {
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        throttle.tryAcquire("jan@example.com", "10.0.0.1");
+        assertEquals(LoginThrottle.Decision.ACCOUNT_BLOCKED, throttle.tryAcquire("jan@example.com", "10.0.0.1"));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("user" + i + "@example.com", "10.0.1." + i));
+        }
+
+        assertEquals(8, throttle.trackedKeys());
+        assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("jan@example.com", "10.0.0.1"));
+    }
+}
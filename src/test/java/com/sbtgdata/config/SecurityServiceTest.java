@@ -0,0 +1,142 @@
+package com.sbtgdata.config;
+
+import com.sbtgdata.data.User;
+import com.sbtgdata.data.UserChangedEvent;
+import com.sbtgdata.data.UserService;
+import com.vaadin.flow.internal.CurrentInstance;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.spring.security.AuthenticationContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SecurityServiceTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private AuthenticationContext authenticationContext;
+
+    @InjectMocks
+    private SecurityService securityService;
+
+    private final Map<Class<?>, Object> sessionAttributes = new HashMap<>();
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId("user-id");
+        user.setEmail("jan@example.com");
+        authenticateAs("jan@example.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        CurrentInstance.clearAll();
+    }
+
+    @Test
+    void testGetCurrentUser_CachedInSession() {
+        openSession();
+        when(userService.findByEmail("jan@example.com")).thenReturn(Optional.of(user));
+
+        assertSame(user, securityService.getCurrentUser());
+        assertSame(user, securityService.getCurrentUser());
+
+        verify(userService, times(1)).findByEmail("jan@example.com");
+    }
+
+    @Test
+    void testGetCurrentUser_ReloadsAfterUserChanged() {
+        openSession();
+        User updated = new User();
+        updated.setEmail("jan@example.com");
+        when(userService.findByEmail("jan@example.com")).thenReturn(Optional.of(user), Optional.of(updated));
+
+        assertSame(user, securityService.getCurrentUser());
+        securityService.onUserChanged(new UserChangedEvent("jan@example.com"));
+
+        assertSame(updated, securityService.getCurrentUser());
+        assertSame(updated, securityService.getCurrentUser());
+        verify(userService, times(2)).findByEmail("jan@example.com");
+    }
+
+    @Test
+    void testGetCurrentUser_OtherUserChangeKeepsCache() {
+        openSession();
+        when(userService.findByEmail("jan@example.com")).thenReturn(Optional.of(user));
+
+        securityService.getCurrentUser();
+        securityService.onUserChanged(new UserChangedEvent("anna@example.com"));
+        securityService.getCurrentUser();
+
+        verify(userService, times(1)).findByEmail("jan@example.com");
+    }
+
+    @Test
+    void testGetCurrentUser_DifferentPrincipalInSameSessionReloads() {
+        openSession();
+        User other = new User();
+        other.setEmail("anna@example.com");
+        when(userService.findByEmail("jan@example.com")).thenReturn(Optional.of(user));
+        when(userService.findByEmail("anna@example.com")).thenReturn(Optional.of(other));
+
+        assertSame(user, securityService.getCurrentUser());
+        authenticateAs("anna@example.com");
+
+        assertSame(other, securityService.getCurrentUser());
+    }
+
+    @Test
+    void testGetCurrentUser_WithoutSessionAlwaysLoads() {
+        when(userService.findByEmail("jan@example.com")).thenReturn(Optional.of(user));
+
+        assertSame(user, securityService.getCurrentUser());
+        assertSame(user, securityService.getCurrentUser());
+
+        verify(userService, times(2)).findByEmail("jan@example.com");
+    }
+
+    @Test
+    void testGetCurrentUser_AnonymousReturnsNull() {
+        when(authenticationContext.getAuthenticatedUser(UserDetails.class)).thenReturn(Optional.empty());
+
+        assertNull(securityService.getCurrentUser());
+
+        verifyNoInteractions(userService);
+    }
+
+    private void authenticateAs(String email) {
+        UserDetails details = org.springframework.security.core.userdetails.User.withUsername(email)
+                .password("x")
+                .roles("USER")
+                .build();
+        lenient().when(authenticationContext.getAuthenticatedUser(UserDetails.class)).thenReturn(Optional.of(details));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void openSession() {
+        VaadinSession session = mock(VaadinSession.class);
+        when(session.getAttribute(any(Class.class)))
+                .thenAnswer(invocation -> sessionAttributes.get(invocation.getArgument(0, Class.class)));
+        doAnswer(invocation -> sessionAttributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(session).setAttribute(any(Class.class), any());
+        VaadinSession.setCurrent(session);
+    }
+}
@@ -0,0 +1,209 @@
+package com.sbtgdata.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThrottledAuthenticationProviderTest {
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(User.withUsername("user@example.com")
+            .password(passwordEncoder.encode("secret"))
+            .roles("USER")
+            .build());
+    private final UserDetailsService countingUsers = username -> {
+        lookups.incrementAndGet();
+        return users.loadUserByUsername(username);
+    };
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThrottledAuthenticationProvider provider = new ThrottledAuthenticationProvider(countingUsers,
+            passwordEncoder, new LoginThrottle(2, 100, Duration.ofMinutes(15), 1000), 1, 4, Duration.ofSeconds(5),
+            meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testAuthenticate_VerifiesOnLoginPool() {
+        Authentication result = provider.authenticate(
+                new UsernamePasswordAuthenticationToken("user@example.com", "secret"));
+
+        assertTrue(result.isAuthenticated());
+        assertEquals(1, meterRegistry.get("login.hash").timer().count());
+        assertEquals(1, meterRegistry.get("login.queue.wait").timer().count());
+    }
+
+    @Test
+    void testAuthenticate_BlocksAccountBeforeHashing() {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(BadCredentialsException.class, () -> provider.authenticate(
+                    new UsernamePasswordAuthenticationToken("USER@example.com", "wrong")));
+        }
+        int lookupsBeforeBlock = lookups.get();
+
+        assertThrows(LoginThrottledException.class, () -> provider.authenticate(
+                new UsernamePasswordAuthenticationToken("user@example.com", "secret")));
+
+        assertEquals(lookupsBeforeBlock, lookups.get());
+        assertEquals(1.0, meterRegistry.get("login.rejected").tag("reason", "account").counter().count());
+    }
+
+    @Test
+    void testAuthenticate_BlocksIpAcrossAccounts() {
+        ThrottledAuthenticationProvider ipLimited = new ThrottledAuthenticationProvider(countingUsers,
+                passwordEncoder, new LoginThrottle(100, 2, Duration.ofMinutes(15), 1000), 1, 4,
+                Duration.ofSeconds(5), meterRegistry);
+        try {
+            for (String account : new String[] {"a@example.com", "b@example.com"}) {
+                assertThrows(BadCredentialsException.class, () -> ipLimited.authenticate(fromIp(account, "wrong",
+                        "203.0.113.7")));
+            }
+
+            assertThrows(LoginThrottledException.class, () -> ipLimited.authenticate(
+                    fromIp("user@example.com", "secret", "203.0.113.7")));
+            assertTrue(ipLimited.authenticate(fromIp("user@example.com", "secret", "203.0.113.8")).isAuthenticated());
+            assertEquals(1.0, meterRegistry.get("login.rejected").tag("reason", "ip").counter().count());
+        } finally {
+            ipLimited.shutdown();
+        }
+    }
+
+    @Test
+    void testAuthenticate_ParallelAttemptsCannotExceedAccountLimit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        UserDetailsService blockingUsers = username -> {
+            awaitQuietly(release);
+            return users.loadUserByUsername(username);
+        };
+        SimpleMeterRegistry localRegistry = new SimpleMeterRegistry();
+        ThrottledAuthenticationProvider parallel = new ThrottledAuthenticationProvider(blockingUsers,
+                passwordEncoder, new LoginThrottle(2, 100, Duration.ofMinutes(15), 1000), 4, 4,
+                Duration.ofSeconds(5), localRegistry);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> inFlight = List.of(
+                    callers.submit(() -> parallel.authenticate(token("user@example.com", "wrong"))),
+                    callers.submit(() -> parallel.authenticate(token("user@example.com", "wrong"))));
+            waitForActive(localRegistry, 2);
+
+            assertThrows(LoginThrottledException.class, () -> parallel.authenticate(
+                    token("user@example.com", "wrong")));
+
+            release.countDown();
+            for (Future<?> future : inFlight) {
+                ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+                assertInstanceOf(BadCredentialsException.class, ex.getCause());
+            }
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void testAuthenticate_RejectsWhenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        UserDetailsService blockingUsers = username -> {
+            awaitQuietly(release);
+            return users.loadUserByUsername(username);
+        };
+        SimpleMeterRegistry localRegistry = new SimpleMeterRegistry();
+        ThrottledAuthenticationProvider saturated = new ThrottledAuthenticationProvider(blockingUsers,
+                passwordEncoder, new LoginThrottle(100, 100, Duration.ofMinutes(15), 1000), 1, 1,
+                Duration.ofSeconds(5), localRegistry);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            callers.submit(() -> saturated.authenticate(token("a@example.com", "secret")));
+            waitForActive(localRegistry, 1);
+            callers.submit(() -> saturated.authenticate(token("b@example.com", "secret")));
+            waitForQueued(localRegistry, 1);
+
+            assertThrows(AuthenticationServiceException.class, () -> saturated.authenticate(
+                    token("c@example.com", "secret")));
+            assertEquals(1.0, localRegistry.get("login.rejected").tag("reason", "queue_full").counter().count());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            saturated.shutdown();
+        }
+    }
+
+    @Test
+    void testAuthenticate_TimesOutAndDoesNotCountAsFailure() {
+        CountDownLatch release = new CountDownLatch(1);
+        UserDetailsService blockingUsers = username -> {
+            awaitQuietly(release);
+            return users.loadUserByUsername(username);
+        };
+        LoginThrottle throttle = new LoginThrottle(1, 100, Duration.ofMinutes(15), 1000);
+        ThrottledAuthenticationProvider slow = new ThrottledAuthenticationProvider(blockingUsers, passwordEncoder,
+                throttle, 1, 4, Duration.ofMillis(100), meterRegistry);
+        try {
+            assertThrows(AuthenticationServiceException.class, () -> slow.authenticate(
+                    token("user@example.com", "secret")));
+
+            assertEquals(1.0, meterRegistry.get("login.rejected").tag("reason", "timeout").counter().count());
+            assertEquals(LoginThrottle.Decision.ALLOWED, throttle.tryAcquire("user@example.com", null));
+        } finally {
+            release.countDown();
+            slow.shutdown();
+        }
+    }
+
+    private UsernamePasswordAuthenticationToken token(String username, String password) {
+        return new UsernamePasswordAuthenticationToken(username, password);
+    }
+
+    private UsernamePasswordAuthenticationToken fromIp(String username, String password, String ip) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(ip);
+        UsernamePasswordAuthenticationToken token = token(username, password);
+        token.setDetails(new WebAuthenticationDetails(request));
+        return token;
+    }
+
+    private void waitForActive(SimpleMeterRegistry registry, int active) throws InterruptedException {
+        for (int i = 0; i < 500 && registry.get("login.active").gauge().value() < active; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitForQueued(SimpleMeterRegistry registry, int queued) throws InterruptedException {
+        for (int i = 0; i < 500 && registry.get("login.queue.depth").gauge().value() < queued; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.sbtgdata.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookBulkheadInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebhookBulkheadInterceptor interceptor = new WebhookBulkheadInterceptor(1, Duration.ofMillis(10),
+            Duration.ofSeconds(5), meterRegistry);
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST,
+            URI.create("http://orchestrator:8080/start"));
+
+    @Test
+    void testIntercept_RejectsWhenHostSaturated() throws Exception {
+        ClientHttpRequestExecution nested = (req, body) -> {
+            assertThrows(ResourceAccessException.class,
+                    () -> interceptor.intercept(request, body, (r, b) -> new MockClientHttpResponse(new byte[0],
+                            HttpStatus.OK)));
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], nested);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1.0, meterRegistry.get("webhook.bulkhead.rejected").counter().count());
+        response.close();
+        assertEquals(0.0, meterRegistry.get("webhook.bulkhead.in_flight").gauge().value());
+    }
+
+    @Test
+    void testIntercept_HoldsPermitUntilBodyClosed() throws Exception {
+        MockClientHttpResponse raw = new MockClientHttpResponse("ok".getBytes(), HttpStatus.OK);
+
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], (r, b) -> raw);
+
+        assertEquals(1.0, meterRegistry.get("webhook.bulkhead.in_flight").gauge().value());
+        assertEquals("ok", new String(response.getBody().readAllBytes()));
+        assertThrows(ResourceAccessException.class, () -> interceptor.intercept(request, new byte[0],
+                (r, b) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK)));
+
+        response.close();
+        response.close();
+
+        assertEquals(0.0, meterRegistry.get("webhook.bulkhead.in_flight").gauge().value());
+        assertEquals(1L, meterRegistry.get("webhook.calls").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void testIntercept_ReleasesPermitWhenExecutionFails() {
+        assertThrows(java.io.IOException.class, () -> interceptor.intercept(request, new byte[0], (r, b) -> {
+            throw new java.io.IOException("reset");
+        }));
+
+        assertEquals(0.0, meterRegistry.get("webhook.bulkhead.in_flight").gauge().value());
+        assertEquals(1L, meterRegistry.get("webhook.calls").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void testIntercept_DeadlineClosesUnreadResponse() throws Exception {
+        WebhookBulkheadInterceptor bounded = new WebhookBulkheadInterceptor(1, Duration.ofMillis(10),
+                Duration.ofMillis(50), meterRegistry);
+        java.util.concurrent.CountDownLatch closed = new java.util.concurrent.CountDownLatch(1);
+        MockClientHttpResponse raw = new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+            @Override
+            public void close() {
+                super.close();
+                closed.countDown();
+            }
+        };
+
+        bounded.intercept(request, new byte[0], (r, b) -> raw);
+
+        assertTrue(closed.await(5, java.util.concurrent.TimeUnit.SECONDS));
+        assertEquals(0.0, meterRegistry.get("webhook.bulkhead.in_flight").gauge().value());
+    }
+
+    @Test
+    void testIntercept_OtherHostsHaveOwnBulkhead() throws Exception {
+        MockClientHttpRequest other = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://other:8080/stop"));
+        ClientHttpRequestExecution nested = (req, body) -> interceptor.intercept(other, body,
+                (r, b) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], nested);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+}
@@ -0,0 +1,102 @@
+package com.sbtgdata.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookCircuitBreakerInterceptorTest {
+
+    private static final String ENDPOINT = "http://orchestrator:8080/start";
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebhookCircuitBreakerInterceptor interceptor = new WebhookCircuitBreakerInterceptor(
+            new WebhookCircuitBreakerInterceptor.Settings(4, 4, 50, 80, Duration.ofSeconds(1),
+                    Duration.ofSeconds(30), 2, 2, 1, 8, 0.5),
+            meterRegistry, clock::get);
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create(ENDPOINT));
+
+    private final ClientHttpRequestExecution ok = (r, b) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+    private final ClientHttpRequestExecution serverError = (r, b) -> new MockClientHttpResponse(new byte[0],
+            HttpStatus.SERVICE_UNAVAILABLE);
+    private final ClientHttpRequestExecution ioError = (r, b) -> {
+        throw new IOException("connection refused");
+    };
+
+    @Test
+    void testIntercept_OpensOnFailureRateAndFailsFast() throws Exception {
+        interceptor.intercept(request, new byte[0], ok).close();
+        interceptor.intercept(request, new byte[0], serverError).close();
+        interceptor.intercept(request, new byte[0], ok).close();
+        assertThrows(IOException.class, () -> interceptor.intercept(request, new byte[0], ioError));
+
+        assertEquals(WebhookCircuitBreakerInterceptor.State.OPEN, interceptor.getState(ENDPOINT));
+        WebhookCallNotPermittedException ex = assertThrows(WebhookCallNotPermittedException.class,
+                () -> interceptor.intercept(request, new byte[0], (r, b) -> fail("wywołanie przy otwartym obwodzie")));
+        assertEquals(Duration.ofSeconds(30), ex.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get("webhook.circuit.rejected").tag("reason", "open").counter().count());
+    }
+
+    @Test
+    void testIntercept_HalfOpenProbesCloseCircuit() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            interceptor.intercept(request, new byte[0], serverError).close();
+        }
+        assertEquals(WebhookCircuitBreakerInterceptor.State.OPEN, interceptor.getState(ENDPOINT));
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        ClientHttpRequestExecution nestedProbe = (r, b) -> {
+            interceptor.intercept(request, b, ok).close();
+            assertThrows(WebhookCallNotPermittedException.class, () -> interceptor.intercept(request, b, ok));
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+        interceptor.intercept(request, new byte[0], nestedProbe).close();
+
+        assertEquals(WebhookCircuitBreakerInterceptor.State.CLOSED, interceptor.getState(ENDPOINT));
+    }
+
+    @Test
+    void testIntercept_CountsSlowResponseBodyAsSlowCall() throws Exception {
+        ClientHttpResponse response = interceptor.intercept(request, new byte[0], ok);
+        assertEquals(2.0, interceptor.getLimit(ENDPOINT));
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        response.getBody().readAllBytes();
+        response.close();
+        response.close();
+
+        assertEquals(1.0, interceptor.getLimit(ENDPOINT));
+    }
+
+    @Test
+    void testIntercept_SlowCallsShrinkConcurrencyLimit() throws Exception {
+        ClientHttpRequestExecution slow = (r, b) -> {
+            clock.addAndGet(Duration.ofSeconds(2).toNanos());
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        interceptor.intercept(request, new byte[0], slow).close();
+        assertEquals(1.0, interceptor.getLimit(ENDPOINT));
+
+        ClientHttpRequestExecution nested = (r, b) -> {
+            assertThrows(WebhookCallNotPermittedException.class, () -> interceptor.intercept(request, b, ok));
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+        interceptor.intercept(request, new byte[0], nested).close();
+
+        assertEquals(2.0, interceptor.getLimit(ENDPOINT));
+        assertEquals(1.0, meterRegistry.get("webhook.circuit.rejected").tag("reason", "limit").counter().count());
+    }
+}
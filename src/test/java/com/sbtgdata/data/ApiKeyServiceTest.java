@@ -0,0 +1,123 @@
+package com.sbtgdata.data;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @InjectMocks
+    private ApiKeyService apiKeyService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(apiKeyService, "hmacSecret", "test-secret");
+        apiKeyService.initMac();
+
+        user = new User("test@example.com", "password", null);
+        user.setId("user-id");
+    }
+
+    @Test
+    void testHash_IsKeyedAndStable() {
+        assertEquals(apiKeyService.hash("plain-key"), apiKeyService.hash("plain-key"));
+        assertNotEquals(apiKeyService.hash("plain-key"), apiKeyService.hash("other-key"));
+        assertNotEquals("plain-key", apiKeyService.hash("plain-key"));
+    }
+
+    @Test
+    void testResolve_CachesHitsAndMisses() {
+        when(userRepository.findByApiKeyHash(apiKeyService.hash("plain-key"))).thenReturn(Optional.of(user));
+        when(userRepository.findByApiKeyHash(apiKeyService.hash("unknown"))).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new ApiKeyPrincipal("user-id", "test@example.com"),
+                    apiKeyService.resolve("plain-key").orElseThrow());
+            assertTrue(apiKeyService.resolve("unknown").isEmpty());
+        }
+
+        verify(userRepository, times(2)).findByApiKeyHash(anyString());
+    }
+
+    @Test
+    void testInvalidate_ForcesLookup() {
+        when(userRepository.findByApiKeyHash(apiKeyService.hash("plain-key")))
+                .thenReturn(Optional.of(user), Optional.empty());
+
+        assertTrue(apiKeyService.resolve("plain-key").isPresent());
+        apiKeyService.invalidate("plain-key");
+
+        assertTrue(apiKeyService.resolve("plain-key").isEmpty());
+    }
+
+    @Test
+    void testResolve_LookupRacingInvalidateIsNotCached() {
+        when(userRepository.findByApiKeyHash(apiKeyService.hash("plain-key"))).thenAnswer(invocation -> {
+            apiKeyService.invalidate("plain-key");
+            return Optional.of(user);
+        }).thenReturn(Optional.empty());
+
+        assertTrue(apiKeyService.resolve("plain-key").isPresent());
+
+        assertTrue(apiKeyService.resolve("plain-key").isEmpty());
+        verify(userRepository, times(2)).findByApiKeyHash(anyString());
+    }
+
+    @Test
+    void testInitMac_BlankSecretFailsStartup() {
+        ReflectionTestUtils.setField(apiKeyService, "hmacSecret", " ");
+
+        assertThrows(IllegalStateException.class, () -> apiKeyService.initMac());
+    }
+
+    @Test
+    void testMigrateStoredKeys_HashesHandsOverAndRemovesPlaintext() {
+        ObjectId id = new ObjectId();
+        when(mongoTemplate.getCollectionName(User.class)).thenReturn("users");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("users")))
+                .thenReturn(List.of(new Document("_id", id).append("API_KEY", "plain-key")));
+
+        apiKeyService.migrateStoredKeys();
+
+        verify(outboxService).setPendingPayloadField(OutboxEvent.USER_CREATED, id.toHexString(), "API_KEY",
+                "plain-key");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq("users"));
+        assertEquals("plain-key", query.getValue().getQueryObject().get("API_KEY"));
+        assertEquals(apiKeyService.hash("plain-key"),
+                update.getValue().getUpdateObject().get("$set", Document.class).get("apiKeyHash"));
+        assertTrue(update.getValue().getUpdateObject().get("$unset", Document.class).containsKey("API_KEY"));
+    }
+}
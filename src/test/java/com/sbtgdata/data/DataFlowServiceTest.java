@@ -3,14 +3,32 @@ package com.sbtgdata.data;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 import com.sbtgdata.config.ErrorEventPublisher;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,6 +52,18 @@ class DataFlowServiceTest {
     @Mock
     private FlowErrorService flowErrorService;
 
+    @Mock
+    private FlowDataService flowDataService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private DataFlowService dataFlowService;
 
@@ -48,36 +78,364 @@ class DataFlowServiceTest {
         testFlow.setOwnerEmail("test@example.com");
 
         testUser = new User();
-        testUser.setId("test-user-id");
+        testUser.setId(new ObjectId().toHexString());
         testUser.setEmail("test@example.com");
 
         ReflectionTestUtils.setField(dataFlowService, "flowCreateWebhookEndpoint", "http://test-webhook1.com");
         ReflectionTestUtils.setField(dataFlowService, "flowCreateWebhookEndpoint2", "http://test-webhook2.com");
+        ReflectionTestUtils.setField(dataFlowService, "webhookExecutor", (Executor) Runnable::run);
     }
 
     @Test
-    void testSave_NewFlow_CallsWebhooks() {
-        when(dataFlowRepository.save(any(DataFlow.class))).thenReturn(testFlow);
+    void testSave_NewFlow_EnqueuesCreateEvent() {
+        testFlow.setId(null);
+        when(dataFlowRepository.save(any(DataFlow.class))).thenAnswer(invocation -> {
+            DataFlow flow = invocation.getArgument(0);
+            flow.setId("test-flow-id");
+            return flow;
+        });
         when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(testUser));
-        when(restTemplate.postForEntity(anyString(), any(), any(Class.class)))
-                .thenReturn(org.springframework.http.ResponseEntity.ok("OK"));
 
         DataFlow result = dataFlowService.save(testFlow);
 
         assertNotNull(result);
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_CREATED), eq("test-flow-id"), anyMap());
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testDeliverCreate_CallsWebhooks() {
+        when(restTemplate.postForEntity(anyString(), any(), any(Class.class)))
+                .thenReturn(org.springframework.http.ResponseEntity.ok("OK"));
+
+        dataFlowService.deliver(createEvent());
+
         verify(restTemplate, times(2)).postForEntity(anyString(), any(), any(Class.class));
     }
 
     @Test
-    void testDelete_CallsWebhooks() {
-        ReflectionTestUtils.setField(dataFlowService, "flowDeleteWebhookEndpoint", "http://test-delete.com");
-        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(testUser));
+    void testDeliverCreate_OneWebhookFails_CompensatesWhenExhausted() {
+        ReflectionTestUtils.setField(dataFlowService, "webhookExecutor", (Executor) command -> new Thread(command).start());
+        when(restTemplate.postForEntity(eq("http://test-webhook1.com"), any(), any(Class.class)))
+                .thenReturn(org.springframework.http.ResponseEntity.ok("OK"));
+        when(restTemplate.postForEntity(eq("http://test-webhook2.com"), any(), any(Class.class)))
+                .thenReturn(org.springframework.http.ResponseEntity.status(500).body("FAIL"));
+        OutboxEvent event = createEvent();
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> dataFlowService.deliver(event));
+        dataFlowService.onDeliveryFailed(event, ex);
+
+        verify(flowDataService).deleteByFlowIds(List.of("test-flow-id"));
+        verify(dataFlowRepository).deleteById("test-flow-id");
+    }
+
+    @Test
+    void testDeliverCreate_FailureInterruptsInFlightCallsBeforeReturning() {
+        ReflectionTestUtils.setField(dataFlowService, "webhookExecutor", (Executor) command -> new Thread(command).start());
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicBoolean interrupted = new java.util.concurrent.atomic.AtomicBoolean();
+        when(restTemplate.postForEntity(eq("http://test-webhook1.com"), any(), any(Class.class))).thenAnswer(inv -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw new org.springframework.web.client.ResourceAccessException("Przerwano");
+            }
+            return org.springframework.http.ResponseEntity.ok("OK");
+        });
+        when(restTemplate.postForEntity(eq("http://test-webhook2.com"), any(), any(Class.class))).thenAnswer(inv -> {
+            started.await();
+            return org.springframework.http.ResponseEntity.status(500).body("FAIL");
+        });
+
+        assertThrows(IllegalStateException.class, () -> dataFlowService.deliver(createEvent()));
+
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    void testDeliverCreate_RejectedSubmissionCancelsSubmittedCalls() {
+        java.util.concurrent.atomic.AtomicInteger submissions = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicBoolean interrupted = new java.util.concurrent.atomic.AtomicBoolean();
+        ReflectionTestUtils.setField(dataFlowService, "webhookExecutor", (Executor) command -> {
+            if (submissions.incrementAndGet() > 1) {
+                assertDoesNotThrow(() -> started.await());
+                throw new org.springframework.core.task.TaskRejectedException("Kolejka pełna");
+            }
+            new Thread(command).start();
+        });
+        when(restTemplate.postForEntity(eq("http://test-webhook1.com"), any(), any(Class.class))).thenAnswer(inv -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw new org.springframework.web.client.ResourceAccessException("Przerwano");
+            }
+            return org.springframework.http.ResponseEntity.ok("OK");
+        });
+
+        assertThrows(IllegalStateException.class, () -> dataFlowService.deliver(createEvent()));
+
+        assertTrue(interrupted.get());
+        verify(restTemplate, never()).postForEntity(eq("http://test-webhook2.com"), any(), any(Class.class));
+    }
+
+    @Test
+    void testDeliverCreate_TrimsExtraUrls() {
+        ReflectionTestUtils.setField(dataFlowService, "flowCreateWebhookExtraEndpoints",
+                List.of(" http://extra-a.com", " http://extra-b.com "));
         when(restTemplate.postForEntity(anyString(), any(), any(Class.class)))
                 .thenReturn(org.springframework.http.ResponseEntity.ok("OK"));
 
+        dataFlowService.deliver(createEvent());
+
+        verify(restTemplate).postForEntity(eq("http://extra-a.com"), any(), any(Class.class));
+        verify(restTemplate).postForEntity(eq("http://extra-b.com"), any(), any(Class.class));
+    }
+
+    @Test
+    void testDelete_ClaimsDeletingBeforePurgingChildren() {
+        testFlow.setStatus(DataFlow.STATUS_STOPPED);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(testFlow);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(testUser));
+
+        dataFlowService.delete(testFlow);
+
+        InOrder order = inOrder(mongoTemplate, outboxService, flowErrorService, flowDataService, dataFlowRepository);
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        order.verify(mongoTemplate).findAndModify(claim.capture(), update.capture(), eq(DataFlow.class));
+        order.verify(outboxService).enqueue(eq(OutboxEvent.FLOW_DELETED), eq("test-flow-id"), anyMap());
+        order.verify(flowErrorService).deleteAllErrorsByFlowId("test-flow-id");
+        order.verify(flowDataService).deleteByFlowIds(List.of("test-flow-id"));
+        order.verify(dataFlowRepository).deleteById("test-flow-id");
+        assertEquals(new Document("$ne", DataFlow.STATUS_DELETING), claim.getValue().getQueryObject().get("status"));
+        assertEquals(DataFlow.STATUS_DELETING,
+                update.getValue().getUpdateObject().get("$set", Document.class).get("status"));
+        verify(dataFlowRepository, never()).delete(any(DataFlow.class));
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testStopThenDelete_StaleEntityStillDeletes() {
+        DataFlow running = new DataFlow();
+        running.setId("test-flow-id");
+        running.setStatus(DataFlow.STATUS_RUNNING);
+        DataFlow stopping = new DataFlow();
+        stopping.setId("test-flow-id");
+        stopping.setOwnerEmail("test@example.com");
+        stopping.setStatus(DataFlow.STATUS_STOPPING);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class)))
+                .thenReturn(running, stopping);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(testUser));
+        testFlow.setVersion(3L);
+
+        assertTrue(dataFlowService.stopFlow("test-flow-id"));
         dataFlowService.delete(testFlow);
 
-        verify(dataFlowRepository, times(1)).delete(testFlow);
-        verify(restTemplate, times(1)).postForEntity(anyString(), any(), any(Class.class));
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_STOPPED), eq("test-flow-id"), anyMap());
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_DELETED), eq("test-flow-id"), anyMap());
+        verify(dataFlowRepository).deleteById("test-flow-id");
+        verify(outboxService, never()).discard(any());
+    }
+
+    @Test
+    void testDelete_AlreadyDeletedDoesNothing() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(null);
+        when(dataFlowRepository.existsById("test-flow-id")).thenReturn(false);
+
+        dataFlowService.deleteById("test-flow-id");
+
+        verifyNoInteractions(outboxService, flowErrorService, flowDataService);
+        verify(dataFlowRepository, never()).deleteById(anyString());
+    }
+
+    @Test
+    void testDelete_ResumesInterruptedDeletionWithoutSecondEvent() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(null);
+        when(dataFlowRepository.existsById("test-flow-id")).thenReturn(true);
+
+        dataFlowService.deleteById("test-flow-id");
+
+        verifyNoInteractions(outboxService);
+        verify(flowDataService).deleteByFlowIds(List.of("test-flow-id"));
+        verify(dataFlowRepository).deleteById("test-flow-id");
+    }
+
+    @Test
+    void testDelete_EnqueueFailureRestoresStatus() {
+        testFlow.setStatus(DataFlow.STATUS_STOPPED);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(testFlow);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(testUser));
+        when(outboxService.enqueue(eq(OutboxEvent.FLOW_DELETED), anyString(), anyMap()))
+                .thenThrow(new IllegalStateException("outbox down"));
+
+        assertThrows(IllegalArgumentException.class, () -> dataFlowService.delete(testFlow));
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), updates.capture(), eq(DataFlow.class));
+        assertEquals(DataFlow.STATUS_STOPPED,
+                updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class).get("status"));
+        verifyNoInteractions(flowErrorService, flowDataService);
+        verify(dataFlowRepository, never()).deleteById(anyString());
+    }
+
+    @Test
+    void testMarkForDeletion_ClaimsAtomicallyThenEnqueues() {
+        testFlow.setStatus(DataFlow.STATUS_RUNNING);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(testFlow);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(testUser));
+
+        dataFlowService.markForDeletion(testFlow);
+
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(claim.capture(), any(Update.class), eq(DataFlow.class));
+        assertEquals(new Document("$ne", DataFlow.STATUS_DELETING), claim.getValue().getQueryObject().get("status"));
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_STOPPED), eq("test-flow-id"), anyMap());
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_DELETED), eq("test-flow-id"), anyMap());
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(DataFlow.class));
+    }
+
+    @Test
+    void testMarkForDeletion_AlreadyClaimedEnqueuesNothing() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(null);
+
+        dataFlowService.markForDeletion(testFlow);
+
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void testSave_LegacyFlowWithoutVersionIsUpdatedNotInserted() {
+        testFlow.setUserIdFromString(testUser.getId());
+        when(dataFlowRepository.save(any(DataFlow.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        dataFlowService.save(testFlow);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(DataFlow.class));
+        assertEquals(new Document("$exists", false), query.getValue().getQueryObject().get("version"));
+        assertEquals(0L, testFlow.getVersion());
+    }
+
+    @Test
+    void testDeliverDelete_CallsWebhook() {
+        ReflectionTestUtils.setField(dataFlowService, "flowDeleteWebhookEndpoint", "http://test-delete.com");
+        when(restTemplate.postForEntity(anyString(), any(), any(Class.class)))
+                .thenReturn(org.springframework.http.ResponseEntity.ok("OK"));
+
+        dataFlowService.deliver(new OutboxEvent(OutboxEvent.FLOW_DELETED, "test-flow-id",
+                Map.of("flow_id", "test-flow-id", "user_id", testUser.getId())));
+
+        verify(restTemplate, times(1)).postForEntity(eq("http://test-delete.com"), any(), any(Class.class));
+    }
+
+    @Test
+    void testStartFlow_StoppedFlowMovesToStartingAndEnqueues() {
+        DataFlow previous = new DataFlow();
+        previous.setStatus(DataFlow.STATUS_STOPPED);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(previous);
+
+        assertTrue(dataFlowService.startFlow("test-flow-id"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), eq(DataFlow.class));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(DataFlow.STATUS_STARTING, set.get("status"));
+        assertEquals(2, set.size());
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_STARTED), eq("test-flow-id"), anyMap());
+        verify(dataFlowRepository, never()).save(any());
+    }
+
+    @Test
+    void testStartFlow_ConcurrentStartCollapses() {
+        testFlow.setStatus(DataFlow.STATUS_STARTING);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(null);
+        when(dataFlowRepository.findById("test-flow-id")).thenReturn(Optional.of(testFlow));
+
+        assertFalse(dataFlowService.startFlow("test-flow-id"));
+
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void testRunBulk_StopsOwnedFlowsAndReportsPerItem() {
+        ExecutorService bulkExecutor = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(dataFlowService, "bulkExecutor", bulkExecutor);
+        DataFlow owned = new DataFlow();
+        owned.setId("owned-id");
+        owned.setStatus(DataFlow.STATUS_RUNNING);
+        when(mongoTemplate.find(any(Query.class), eq(DataFlow.class))).thenReturn(List.of(owned));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(owned);
+        List<BulkFlowResult> progress = new CopyOnWriteArrayList<>();
+
+        List<BulkFlowResult> results = dataFlowService.runBulk(BulkFlowOperation.STOP,
+                List.of("owned-id", "foreign-id"), "test@example.com", progress::add).join();
+        bulkExecutor.shutdown();
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(2, progress.size());
+        verify(outboxService).enqueue(eq(OutboxEvent.FLOW_STOPPED), eq("owned-id"), anyMap());
+        verify(outboxService, never()).enqueue(anyString(), eq("foreign-id"), anyMap());
+    }
+
+    @Test
+    void testOnDeliveryFailed_StartRevertsAndRecordsError() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(DataFlow.class))).thenReturn(testFlow);
+        OutboxEvent event = new OutboxEvent(OutboxEvent.FLOW_STARTED, "test-flow-id", new HashMap<>());
+
+        dataFlowService.onDeliveryFailed(event, new RuntimeException("HTTP 503"));
+
+        verify(flowErrorService).recordError("test-flow-id", "Nie udało się uruchomić przepływu: HTTP 503");
+    }
+
+    private OutboxEvent createEvent() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("flow_id", "test-flow-id");
+        payload.put("user_id", testUser.getId());
+        payload.put("function", "def run(x): return x");
+        payload.put("packages", List.of());
+        return new OutboxEvent(OutboxEvent.FLOW_CREATED, "test-flow-id", payload);
+    }
+
+    @Test
+    void testFindSummaryPage_FiltersByEscapedEmailPrefixWithoutFunction() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("flows"), eq(DataFlowSummary.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        dataFlowService.findSummaryPage(" Jan.K", PageRequest.of(2, 50));
+
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq("flows"), eq(DataFlowSummary.class));
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        Document match = pipeline.get(0).get("$match", Document.class);
+        java.util.regex.Pattern prefix = match.get("ownerEmailLower", java.util.regex.Pattern.class);
+        assertEquals("^\\Qjan.k\\E", prefix.pattern());
+        assertEquals(0, prefix.flags());
+        assertEquals(100L, ((Number) pipeline.get(2).get("$skip")).longValue());
+        assertEquals(50L, ((Number) pipeline.get(3).get("$limit")).longValue());
+        Document project = pipeline.get(4).get("$project", Document.class);
+        assertFalse(project.containsKey("function"));
+        assertTrue(project.containsKey("hasPackages"));
+    }
+
+    @Test
+    void testBackfillOwnerEmailLower_UsesSameNormalisationAsFilter() {
+        DataFlow legacy = new DataFlow();
+        legacy.setId("legacy-flow");
+        legacy.setOwnerEmail("ŁUKASZ@Example.com");
+        when(mongoTemplate.stream(any(Query.class), eq(DataFlow.class))).thenReturn(java.util.stream.Stream.of(legacy));
+
+        dataFlowService.backfillOwnerEmailLower();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(DataFlow.class));
+        assertEquals("łukasz@example.com", update.getValue().getUpdateObject().get("$set", Document.class)
+                .get("ownerEmailLower"));
     }
 }
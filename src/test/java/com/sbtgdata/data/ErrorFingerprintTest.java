@@ -0,0 +1,29 @@
+package com.sbtgdata.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorFingerprintTest {
+
+    @Test
+    void testNormalize_MasksVariableParts() {
+        String normalized = ErrorFingerprint.normalize(
+                "Timeout after 3000 ms at 2026-01-08T14:30:00.123Z for record 65a1f0c2e4b0a1b2c3d4e5f6 "
+                        + "(request 123e4567-e89b-12d3-a456-426614174000, addr 0x7ffdf)");
+
+        assertEquals("Timeout after <n> ms at <ts> for record <oid> (request <uuid>, addr <hex>)", normalized);
+    }
+
+    @Test
+    void testOf_SameShapeSameFingerprint() {
+        assertEquals(ErrorFingerprint.of("flow-1", "KeyError: row 17"),
+                ErrorFingerprint.of("flow-1", "KeyError: row 4711"));
+    }
+
+    @Test
+    void testOf_DifferentFlowsDiffer() {
+        assertNotEquals(ErrorFingerprint.of("flow-1", "KeyError: row 17"),
+                ErrorFingerprint.of("flow-2", "KeyError: row 17"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.sbtgdata.data;
+
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.ListCollectionsIterable;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlowDataServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private FlowRecordRepository flowRecordRepository;
+
+    @Mock
+    private MongoDatabase database;
+
+    @Mock
+    private ListCollectionsIterable<Document> collections;
+
+    @InjectMocks
+    private FlowDataService flowDataService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(flowDataService, "granularity", Granularity.MINUTES);
+        ReflectionTestUtils.setField(flowDataService, "expireAfter", Duration.ofDays(30));
+    }
+
+    private void mockCollectionInfo(Document info) {
+        when(mongoTemplate.getDb()).thenReturn(database);
+        when(database.listCollections()).thenReturn(collections);
+        when(collections.filter(any())).thenReturn(collections);
+        when(collections.first()).thenReturn(info);
+    }
+
+    @Test
+    void testEnsureCollection_CreatesTimeSeriesCollection() {
+        mockCollectionInfo(null);
+
+        flowDataService.ensureCollection();
+
+        ArgumentCaptor<CollectionOptions> options = ArgumentCaptor.forClass(CollectionOptions.class);
+        verify(mongoTemplate).createCollection(eq(FlowRecord.COLLECTION), options.capture());
+        CollectionOptions.TimeSeriesOptions timeSeries = options.getValue().getTimeSeriesOptions().orElseThrow();
+        assertEquals("ts", timeSeries.getTimeField());
+        assertEquals("flow_id", timeSeries.getMetaField());
+        assertEquals(Granularity.MINUTES, timeSeries.getGranularity());
+        assertEquals(Duration.ofDays(30), timeSeries.getExpireAfter());
+    }
+
+    @Test
+    void testEnsureCollection_UpdatesChangedExpiry() {
+        mockCollectionInfo(new Document("type", "timeseries")
+                .append("options", new Document("expireAfterSeconds", 60L)));
+
+        flowDataService.ensureCollection();
+
+        verify(mongoTemplate, never()).createCollection(anyString(), any(CollectionOptions.class));
+        verify(database).runCommand(new Document("collMod", FlowRecord.COLLECTION)
+                .append("expireAfterSeconds", Duration.ofDays(30).toSeconds()));
+    }
+
+    @Test
+    void testEnsureCollection_FailsWhenDatabaseUnavailable() {
+        when(mongoTemplate.getDb()).thenThrow(new MongoTimeoutException("brak serwera"));
+
+        assertThrows(IllegalStateException.class, () -> flowDataService.ensureCollection());
+    }
+
+    @Test
+    void testEnsureCollection_FailsOnPlainCollection() {
+        mockCollectionInfo(new Document("type", "collection"));
+
+        assertThrows(IllegalStateException.class, () -> flowDataService.ensureCollection());
+        verify(mongoTemplate, never()).createCollection(anyString(), any(CollectionOptions.class));
+    }
+
+    @Test
+    void testStreamRange_OpenBoundsCoverAllData() {
+        ReflectionTestUtils.setField(flowDataService, "exportBatchSize", 500);
+        when(mongoTemplate.stream(any(Query.class), eq(FlowRecord.class))).thenReturn(Stream.empty());
+
+        flowDataService.streamRange("flow-1", null, null, 0);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(FlowRecord.class));
+        Document ts = query.getValue().getQueryObject().get("ts", Document.class);
+        assertEquals(Instant.EPOCH, ts.get("$gte"));
+        assertTrue(((Instant) ts.get("$lt")).isAfter(Instant.now().plus(Duration.ofDays(365 * 1000))));
+        assertEquals(500, query.getValue().getMeta().getCursorBatchSize());
+        assertEquals(new Document("ts", 1).append("id", 1), query.getValue().getSortObject());
+    }
+
+    @Test
+    void testSnapshotRange_ChangesWhenEdgesOfRangeChange() {
+        when(flowRecordRepository.countByFlowIdAndTsRange(eq("flow-1"), any(), any())).thenReturn(3L);
+        when(mongoTemplate.findOne(any(Query.class), eq(FlowRecord.class)))
+                .thenReturn(withId("first"), withId("last"), withId("second"), withId("last"));
+
+        RangeSnapshot before = flowDataService.snapshotRange("flow-1", null, null);
+        RangeSnapshot afterExpiry = flowDataService.snapshotRange("flow-1", null, null);
+
+        assertEquals(3, before.rows());
+        assertEquals("3:first:last", before.version());
+        assertNotEquals(before.version(), afterExpiry.version());
+    }
+
+    private static FlowRecord withId(String id) {
+        FlowRecord record = new FlowRecord();
+        record.setId(id);
+        return record;
+    }
+
+    @Test
+    void testWriteCsv_KeepsLaterFieldsInExtraColumnAndEscapes() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(FlowRecord.class))).thenReturn(Stream.of(
+                record("2026-01-08T14:30:00Z", Map.of("value", 1)),
+                record("2026-01-08T14:30:01Z", Map.of("value", "a,\"b\"", "extra", 2))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = flowDataService.writeCsv("flow-1", null, null, 0, out);
+
+        assertEquals(2, rows);
+        assertEquals("ts,value,_extra\n2026-01-08T14:30:00Z,1,\n"
+                        + "2026-01-08T14:30:01Z,\"a,\"\"b\"\"\",\"{\"\"extra\"\": 2}\"\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteCsv_ResumeSkipsRowsAndKeepsFirstRecordColumns() throws Exception {
+        when(mongoTemplate.findOne(any(Query.class), eq(FlowRecord.class)))
+                .thenReturn(record("2026-01-08T14:30:00Z", Map.of("value", 1)));
+        when(mongoTemplate.stream(any(Query.class), eq(FlowRecord.class))).thenReturn(Stream.of(
+                record("2026-01-08T14:30:01Z", Map.of("value", 2, "extra", 3))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = flowDataService.writeCsv("flow-1", null, null, 1, out);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(FlowRecord.class));
+        assertEquals(1, query.getValue().getSkip());
+        assertEquals(1, rows);
+        assertEquals("2026-01-08T14:30:01Z,2,\"{\"\"extra\"\": 3}\"\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static FlowRecord record(String ts, Map<String, Object> data) {
+        FlowRecord record = new FlowRecord();
+        record.setTs(Instant.parse(ts));
+        record.setData(data);
+        return record;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sbtgdata.data;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// mvn test -Dtest=FlowDataStorageBenchmark -Dflowdata.bench.uri=mongodb://localhost:27017
+@EnabledIfSystemProperty(named = "flowdata.bench.uri", matches = ".+")
+class FlowDataStorageBenchmark {
+
+    private static final int FLOWS = 50;
+    private static final int RECORDS = Integer.getInteger("flowdata.bench.records", 1_000_000);
+    private static final int BATCH_SIZE = 1000;
+    private static final int RANGE_QUERIES = 200;
+    private static final long SPAN_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long RANGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    void compareTimeSeriesWithPlainCollection() {
+        try (MongoClient client = MongoClients.create(System.getProperty("flowdata.bench.uri"))) {
+            MongoDatabase database = client.getDatabase("SBTG_data_bench");
+            database.drop();
+
+            database.createCollection("plain");
+            database.getCollection("plain").createIndex(Indexes.ascending("flow_id", "ts"));
+            database.createCollection("timeseries", new CreateCollectionOptions().timeSeriesOptions(
+                    new TimeSeriesOptions("ts").metaField("flow_id").granularity(TimeSeriesGranularity.SECONDS)));
+            database.getCollection("timeseries").createIndex(Indexes.ascending("flow_id", "ts"));
+
+            long start = System.currentTimeMillis() - SPAN_MILLIS;
+            for (String name : List.of("plain", "timeseries")) {
+                MongoCollection<Document> collection = database.getCollection(name);
+                double insertRate = insert(collection, start);
+                long[] latencies = rangeScans(collection, start);
+                Document stats = database.runCommand(new Document("collStats", name));
+                System.out.printf("%-10s insert %,.0f rec/s | range scan p50 %.2f ms p99 %.2f ms | "
+                                + "storage %,d kB, indexes %,d kB%n",
+                        name, insertRate, latencies[latencies.length / 2] / 1e6,
+                        latencies[(int) (latencies.length * 0.99)] / 1e6,
+                        stats.get("storageSize", Number.class).longValue() / 1024,
+                        stats.get("totalIndexSize", Number.class).longValue() / 1024);
+            }
+
+            database.drop();
+        }
+    }
+
+    private double insert(MongoCollection<Document> collection, long start) {
+        long begin = System.nanoTime();
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < RECORDS; i++) {
+            long ts = start + SPAN_MILLIS * i / RECORDS;
+            batch.add(new Document("flow_id", "flow-" + i % FLOWS)
+                    .append("ts", new Date(ts))
+                    .append("data", new Document("value", ThreadLocalRandom.current().nextDouble())
+                            .append("sensor", "s-" + i % 7)));
+            if (batch.size() == BATCH_SIZE) {
+                collection.insertMany(batch, new InsertManyOptions().ordered(false));
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            collection.insertMany(batch, new InsertManyOptions().ordered(false));
+        }
+        return RECORDS / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private long[] rangeScans(MongoCollection<Document> collection, long start) {
+        long[] latencies = new long[RANGE_QUERIES];
+        for (int i = 0; i < RANGE_QUERIES; i++) {
+            long from = start + ThreadLocalRandom.current().nextLong(SPAN_MILLIS - RANGE_MILLIS);
+            long begin = System.nanoTime();
+            for (Document ignored : collection.find(Filters.and(
+                            Filters.eq("flow_id", "flow-" + i % FLOWS),
+                            Filters.gte("ts", new Date(from)),
+                            Filters.lt("ts", new Date(from + RANGE_MILLIS))))
+                    .sort(Sorts.ascending("ts"))
+                    .batchSize(BATCH_SIZE)) {
+            }
+            latencies[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sbtgdata.data;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.bson.Document;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlowErrorServiceTest {
+
+    @Mock
+    private FlowErrorRepository flowErrorRepository;
+
+    @Mock
+    private DataFlowRepository dataFlowRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private FlowErrorService flowErrorService;
+
+    private final String userId = new ObjectId().toHexString();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(flowErrorService, "userErrorsMaxResults", 50);
+        ReflectionTestUtils.setField(flowErrorService, "fingerprintingEnabled", true);
+    }
+
+    @Test
+    void testGetErrorsByUserId_QueriesOnlyUserFlows() {
+        DataFlow flow = new DataFlow();
+        flow.setId("flow-1");
+        when(dataFlowRepository.findIdsByUserId(any(ObjectId.class))).thenReturn(List.of(flow));
+        when(flowErrorRepository.streamByFlowIdInOrderByDateDesc(anyCollection(), any(Limit.class)))
+                .thenReturn(Stream.of(new FlowError("boom", "flow-1")));
+
+        List<FlowError> result = flowErrorService.getErrorsByUserId(userId);
+
+        assertEquals(1, result.size());
+        verify(flowErrorRepository).streamByFlowIdInOrderByDateDesc(List.of("flow-1"), Limit.of(50));
+        verify(flowErrorRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetErrorsByUserId_NoFlows_SkipsErrorQuery() {
+        when(dataFlowRepository.findIdsByUserId(any(ObjectId.class))).thenReturn(Collections.emptyList());
+
+        List<FlowError> result = flowErrorService.getErrorsByUserId(userId);
+
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(flowErrorRepository);
+    }
+
+    @Test
+    void testGetErrorsByUserId_InvalidUserId() {
+        assertTrue(flowErrorService.getErrorsByUserId("not-an-object-id").isEmpty());
+    }
+
+    @Test
+    void testGetErrorSummariesByFlowId_GroupsInMongo() {
+        LocalDateTime now = LocalDateTime.now();
+        ErrorSummary summary = new ErrorSummary("boom", 42, now.minusHours(1), now);
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(ErrorSummary.class)))
+                .thenReturn(new AggregationResults<>(List.of(summary), new Document()));
+
+        List<ErrorSummary> result = flowErrorService.getErrorSummariesByFlowId("flow-1");
+
+        assertEquals(1, result.size());
+        assertEquals(42, result.get(0).getCount());
+        verify(flowErrorRepository, never()).findByFlowId(anyString());
+    }
+
+    @Test
+    void testCountUniqueErrorsByFlowIds_SingleAggregation() {
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(
+                        new Document("_id", "flow-1").append("count", 3),
+                        new Document("_id", "flow-2").append("count", 1)), new Document()));
+
+        Map<String, Long> counts = flowErrorService.countUniqueErrorsByFlowIds(List.of("flow-1", "flow-2", "flow-3"));
+
+        assertEquals(3L, counts.get("flow-1"));
+        assertEquals(1L, counts.get("flow-2"));
+        assertFalse(counts.containsKey("flow-3"));
+        verify(mongoTemplate, times(1)).aggregate(any(TypedAggregation.class), eq(Document.class));
+    }
+
+    @Test
+    void testRecordError_UpsertsByFingerprint() {
+        flowErrorService.recordError("flow-1", "Timeout after 3000 ms");
+
+        verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(FlowError.class));
+        verify(flowErrorRepository, never()).save(any());
+    }
+
+    @Test
+    void testRecordError_FingerprintingDisabled_Inserts() {
+        ReflectionTestUtils.setField(flowErrorService, "fingerprintingEnabled", false);
+
+        flowErrorService.recordError("flow-1", "Timeout after 3000 ms");
+
+        verify(flowErrorRepository).save(any(FlowError.class));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void testGetErrorsPageByUserId_UsesKeysetAfterBoundary() {
+        DataFlow flow = new DataFlow();
+        flow.setId("flow-1");
+        when(dataFlowRepository.findIdsByUserId(any(ObjectId.class))).thenReturn(List.of(flow));
+        FlowError boundary = new FlowError("boom", "flow-1");
+        boundary.setId(new ObjectId().toHexString());
+
+        flowErrorService.getErrorsPageByUserId(userId, boundary, 500, 50, false);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(FlowError.class));
+        Query query = captor.getValue();
+        assertTrue(query.getQueryObject().containsKey("$or"));
+        assertEquals(0, query.getSkip());
+        assertEquals(50, query.getLimit());
+    }
+}
@@ -0,0 +1,290 @@
+package com.sbtgdata.data;
+
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlowIngestServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private DataFlowService dataFlowService;
+
+    @Mock
+    private FlowDataService flowDataService;
+
+    @Mock
+    private FlowRollupService flowRollupService;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @InjectMocks
+    private FlowIngestService flowIngestService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private void start(int queueCapacity) {
+        ReflectionTestUtils.setField(flowIngestService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(flowIngestService, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(flowIngestService, "writers", 1);
+        flowIngestService.startWriters();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        flowIngestService.stopWriters();
+    }
+
+    @Test
+    void testEnqueue_WritesUnorderedBatch() throws InterruptedException {
+        when(mongoTemplate.getCollection(FlowRecord.COLLECTION)).thenReturn(collection);
+        start(100);
+
+        flowIngestService.enqueue("flow-1", "user-1", List.of(Map.of("a", 1), Map.of("a", 2)));
+        flowIngestService.stopWriters();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Document>> batch = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<InsertManyOptions> options = ArgumentCaptor.forClass(InsertManyOptions.class);
+        verify(collection, atLeastOnce()).insertMany(batch.capture(), options.capture());
+        assertFalse(options.getValue().isOrdered());
+        assertEquals(2, batch.getAllValues().stream().mapToInt(List::size).sum());
+        assertEquals("flow-1", batch.getValue().get(0).getString("flow_id"));
+        assertEquals(2.0, meterRegistry.get("ingest.records").counter().count());
+        verify(flowRollupService, atLeastOnce()).apply(anyList());
+    }
+
+    @Test
+    void testEnqueue_RejectsWholeRequestWhenQueueFull() {
+        start(1);
+
+        IngestRejectedException ex = assertThrows(IngestRejectedException.class,
+                () -> flowIngestService.enqueue("flow-1", "user-1", List.of(Map.of("a", 1), Map.of("a", 2))));
+
+        assertEquals(FlowIngestService.REASON_QUEUE_FULL, ex.getReason());
+        assertEquals(0, flowIngestService.getQueueDepth());
+        assertEquals(2.0, meterRegistry.get("ingest.rejected").tag("reason", "queue_full").counter().count());
+        verify(collection, never()).insertMany(any(), any(InsertManyOptions.class));
+    }
+
+    @Test
+    void testEnqueue_LimitsHotFlowWithoutStarvingOthers() {
+        ReflectionTestUtils.setField(flowIngestService, "flowRateLimit", 10);
+        ReflectionTestUtils.setField(flowIngestService, "flowBurst", 10);
+        start(1000);
+
+        flowIngestService.enqueue("hot", "user-1", records(10));
+        IngestRejectedException ex = assertThrows(IngestRejectedException.class,
+                () -> flowIngestService.enqueue("hot", "user-1", records(5)));
+        flowIngestService.enqueue("quiet", "user-1", records(10));
+
+        assertEquals(FlowIngestService.REASON_FLOW_RATE, ex.getReason());
+        assertTrue(ex.getRetryAfter().toMillis() > 0);
+        assertEquals(5.0, meterRegistry.get("ingest.rejected").tag("reason", "flow_rate").counter().count());
+    }
+
+    @Test
+    void testEnqueue_CapsQueueShareOfSingleFlow() {
+        CountDownLatch writesBlocked = new CountDownLatch(1);
+        when(mongoTemplate.getCollection(FlowRecord.COLLECTION)).thenReturn(collection);
+        when(collection.insertMany(any(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            writesBlocked.await();
+            return null;
+        });
+        ReflectionTestUtils.setField(flowIngestService, "maxFlowShare", 0.5);
+        start(20);
+
+        try {
+            flowIngestService.enqueue("hot", "user-1", records(10));
+            IngestRejectedException ex = assertThrows(IngestRejectedException.class,
+                    () -> flowIngestService.enqueue("hot", "user-2", records(1)));
+            flowIngestService.enqueue("quiet", "user-2", records(10));
+
+            assertEquals(FlowIngestService.REASON_FLOW_QUEUE, ex.getReason());
+        } finally {
+            writesBlocked.countDown();
+        }
+    }
+
+    private static List<Map<String, Object>> records(int count) {
+        return IntStream.range(0, count)
+                .<Map<String, Object>>mapToObj(i -> Map.of("i", i))
+                .toList();
+    }
+
+    @Test
+    void testCheckAccess_CachesFlowAndChecksOwner() {
+        start(10);
+        ObjectId owner = new ObjectId();
+        DataFlow flow = new DataFlow();
+        flow.setUserId(owner);
+        flow.setStatus(DataFlow.STATUS_RUNNING);
+        when(dataFlowService.findById("flow-1")).thenReturn(Optional.of(flow));
+
+        assertEquals(FlowIngestService.FlowAccess.ALLOWED, flowIngestService.checkAccess("flow-1", owner.toHexString()));
+        assertEquals(FlowIngestService.FlowAccess.NOT_FOUND, flowIngestService.checkAccess("flow-1", "other"));
+
+        verify(dataFlowService, times(1)).findById("flow-1");
+    }
+
+    @Test
+    void testOnFlowChanged_DeletedFlowDropsQueuedRecordsAndDeniesAccess() throws InterruptedException {
+        CountDownLatch writesBlocked = new CountDownLatch(1);
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        when(mongoTemplate.getCollection(FlowRecord.COLLECTION)).thenReturn(collection);
+        when(collection.insertMany(any(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            firstWrite.countDown();
+            writesBlocked.await();
+            return null;
+        });
+        start(100);
+        ObjectId owner = new ObjectId();
+        DataFlow flow = new DataFlow();
+        flow.setUserId(owner);
+        flow.setStatus(DataFlow.STATUS_RUNNING);
+        when(dataFlowService.findById("flow-1")).thenReturn(Optional.of(flow));
+        assertEquals(FlowIngestService.FlowAccess.ALLOWED, flowIngestService.checkAccess("flow-1", owner.toHexString()));
+
+        try {
+            flowIngestService.enqueue("other", "user-1", records(1));
+            assertDoesNotThrow(() -> firstWrite.await());
+            flowIngestService.enqueue("flow-1", "user-1", records(5));
+
+            flowIngestService.onFlowChanged(new FlowChangedEvent("flow-1", true));
+
+            assertEquals(FlowIngestService.FlowAccess.NOT_FOUND,
+                    flowIngestService.checkAccess("flow-1", owner.toHexString()));
+            verify(dataFlowService, times(1)).findById("flow-1");
+        } finally {
+            writesBlocked.countDown();
+        }
+        flowIngestService.stopWriters();
+
+        assertEquals(5.0, meterRegistry.counter("ingest.discarded").count());
+        verify(collection, times(1)).insertMany(any(), any(InsertManyOptions.class));
+        verify(flowDataService, never()).deleteByFlowIds(any());
+    }
+
+    @Test
+    void testOnFlowChanged_PurgesRecordsWrittenDuringDeletion() throws InterruptedException {
+        CountDownLatch writesBlocked = new CountDownLatch(1);
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        when(mongoTemplate.getCollection(FlowRecord.COLLECTION)).thenReturn(collection);
+        when(collection.insertMany(any(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            firstWrite.countDown();
+            writesBlocked.await();
+            return null;
+        });
+        start(100);
+
+        flowIngestService.enqueue("flow-1", "user-1", records(2));
+        assertTrue(firstWrite.await(5, TimeUnit.SECONDS));
+        flowIngestService.onFlowChanged(new FlowChangedEvent("flow-1", true));
+        writesBlocked.countDown();
+        flowIngestService.stopWriters();
+
+        verify(flowDataService).deleteByFlowIds(Set.of("flow-1"));
+        verify(flowRollupService, never()).apply(anyList());
+        assertEquals(2.0, meterRegistry.counter("ingest.discarded").count());
+    }
+
+    @Test
+    void testOnFlowChanged_TransitionEvictsCachedStatus() {
+        start(10);
+        ObjectId owner = new ObjectId();
+        DataFlow running = new DataFlow();
+        running.setUserId(owner);
+        running.setStatus(DataFlow.STATUS_RUNNING);
+        DataFlow stopped = new DataFlow();
+        stopped.setUserId(owner);
+        stopped.setStatus(DataFlow.STATUS_STOPPED);
+        when(dataFlowService.findById("flow-1")).thenReturn(Optional.of(running), Optional.of(stopped));
+
+        assertEquals(FlowIngestService.FlowAccess.ALLOWED, flowIngestService.checkAccess("flow-1", owner.toHexString()));
+        flowIngestService.onFlowChanged(new FlowChangedEvent("flow-1", false));
+
+        assertEquals(FlowIngestService.FlowAccess.INACTIVE, flowIngestService.checkAccess("flow-1", owner.toHexString()));
+    }
+
+    @Test
+    void testCheckAccess_BoundsCachedFlows() {
+        ReflectionTestUtils.setField(flowIngestService, "flowCacheMaxSize", 10);
+        start(10);
+        when(dataFlowService.findById(anyString())).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 100; i++) {
+            flowIngestService.checkAccess("flow-" + i, "user-1");
+        }
+
+        Map<?, ?> flowCache = (Map<?, ?>) ReflectionTestUtils.getField(flowIngestService, "flowCache");
+        assertTrue(flowCache.size() <= 10);
+    }
+
+    @Test
+    void testWriteBatch_RetriesWhenDatabaseUnavailable() throws InterruptedException {
+        CountDownLatch written = new CountDownLatch(1);
+        when(mongoTemplate.getCollection(FlowRecord.COLLECTION)).thenReturn(collection);
+        when(collection.insertMany(any(), any(InsertManyOptions.class)))
+                .thenThrow(new MongoTimeoutException("brak serwera"))
+                .thenAnswer(invocation -> {
+                    written.countDown();
+                    return null;
+                });
+        ReflectionTestUtils.setField(flowIngestService, "writeRetryBackoff", Duration.ofMillis(1));
+        start(10);
+
+        flowIngestService.enqueue("flow-1", "user-1", records(3));
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        verify(collection, atLeast(2)).insertMany(anyList(), any(InsertManyOptions.class));
+        verify(flowRollupService, timeout(5000).atLeastOnce()).apply(anyList());
+        assertEquals(0.0, meterRegistry.counter("ingest.failed").count());
+    }
+
+    @Test
+    void testWriteBatch_MarksRollupsDirtyWhenApplyFails() throws InterruptedException {
+        when(mongoTemplate.getCollection(FlowRecord.COLLECTION)).thenReturn(collection);
+        doThrow(new IllegalStateException("brak serwera")).when(flowRollupService).apply(anyList());
+        start(10);
+
+        flowIngestService.enqueue("flow-1", "user-1", records(2));
+        flowIngestService.stopWriters();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Document>> dirty = ArgumentCaptor.forClass(List.class);
+        verify(flowRollupService, atLeastOnce()).markDirty(dirty.capture());
+        assertEquals(2, dirty.getAllValues().stream().mapToInt(List::size).sum());
+        assertEquals(2.0, meterRegistry.counter("ingest.rollup.failed").count());
+    }
+}
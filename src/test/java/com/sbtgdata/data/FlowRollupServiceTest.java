@@ -0,0 +1,225 @@
+package com.sbtgdata.data;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlowRollupServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @InjectMocks
+    private FlowRollupService flowRollupService;
+
+    @Test
+    void testApply_UpsertsOneBucketPerResolution() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollup.COLLECTION))
+                .thenReturn(bulkOperations);
+
+        flowRollupService.apply(List.of(
+                record("2026-01-08T14:30:05Z", new Document("temp", 20).append("label", "a")),
+                record("2026-01-08T14:30:45Z", new Document("temp", 24.5).append("ok", true))));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulkOperations, times(3)).upsert(queries.capture(), updates.capture());
+        verify(bulkOperations).execute();
+
+        int minute = indexOf(queries.getAllValues(), RollupResolution.MINUTE);
+        assertEquals(Date.from(Instant.parse("2026-01-08T14:30:00Z")),
+                queries.getAllValues().get(minute).getQueryObject().get("bucket"));
+        List<Document> pipeline = ((AggregationUpdate) updates.getAllValues().get(minute))
+                .toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(2, pipeline.size());
+        assertEquals(List.of(new Document("$ifNull", List.of("$count", 0L)), 2L),
+                pipeline.get(0).get("$set", Document.class).get("count", Document.class).get("$add"));
+        Document temp = pipeline.get(1).get("$set", Document.class).get("fields.temp", Document.class);
+        Document merged = (Document) temp.getList("$cond", Object.class).get(1);
+        assertEquals(List.of(new Document("$ifNull", List.of("$fields.temp.sum", 0.0)), 44.5),
+                merged.get("sum", Document.class).get("$add"));
+        assertEquals(List.of("$fields.temp.min", 20.0), merged.get("min", Document.class).get("$min"));
+        assertEquals(List.of("$fields.temp.max", 24.5), merged.get("max", Document.class).get("$max"));
+    }
+
+    @Test
+    void testApply_TruncatesDaysInConfiguredZoneAndCapsFields() {
+        ReflectionTestUtils.setField(flowRollupService, "maxFields", 2);
+        ReflectionTestUtils.setField(flowRollupService, "zone", ZoneId.of("Europe/Warsaw"));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollup.COLLECTION))
+                .thenReturn(bulkOperations);
+
+        flowRollupService.apply(List.of(record("2026-01-08T23:30:00Z",
+                new Document("a", 1).append("b", 2).append("c", 3))));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulkOperations, times(3)).upsert(queries.capture(), updates.capture());
+        int day = indexOf(queries.getAllValues(), RollupResolution.DAY);
+        assertEquals(Date.from(Instant.parse("2026-01-08T23:00:00Z")),
+                queries.getAllValues().get(day).getQueryObject().get("bucket"));
+        assertEquals(3, ((AggregationUpdate) updates.getAllValues().get(day))
+                .toPipeline(Aggregation.DEFAULT_CONTEXT).size());
+    }
+
+    @Test
+    void testStreamRange_IncludesBucketContainingFrom() {
+        when(mongoTemplate.stream(any(Query.class), eq(FlowRollup.class))).thenReturn(Stream.empty());
+
+        flowRollupService.streamRange("flow-1", RollupResolution.HOUR, Instant.parse("2026-01-08T14:30:00Z"), null,
+                0);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(FlowRollup.class));
+        assertEquals(Date.from(Instant.parse("2026-01-08T14:00:00Z")),
+                query.getValue().getQueryObject().get("bucket", Document.class).get("$gte"));
+    }
+
+    @Test
+    void testMarkDirty_UpsertsOneMarkerPerFlowAndDay() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollupService.DIRTY_COLLECTION))
+                .thenReturn(bulkOperations);
+
+        flowRollupService.markDirty(List.of(record("2026-01-08T14:30:05Z", new Document("temp", 20)),
+                record("2026-01-08T23:59:00Z", new Document("temp", 24))));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).upsert(query.capture(), update.capture());
+        verify(bulkOperations).execute();
+        assertEquals("flow-1|2026-01-08T00:00:00Z", query.getValue().getQueryObject().get("_id"));
+        assertEquals(Date.from(Instant.parse("2026-01-08T00:00:00Z")),
+                update.getValue().getUpdateObject().get("$setOnInsert", Document.class).get("day"));
+    }
+
+    @Test
+    void testReconcile_RebuildsOnlyMarkedClosedDay() {
+        Date markedAt = new Date();
+        Document marker = new Document("_id", "flow-1|2026-01-08T00:00:00Z").append("flow_id", "flow-1")
+                .append("day", Date.from(Instant.parse("2026-01-08T00:00:00Z"))).append("markedAt", markedAt);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(FlowRollupService.DIRTY_COLLECTION)))
+                .thenReturn(List.of(new Document("_id", marker.get("_id"))));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(FlowRollupService.DIRTY_COLLECTION))).thenReturn(marker);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollup.COLLECTION))
+                .thenReturn(bulkOperations);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(FlowRecord.COLLECTION))).thenReturn(
+                Stream.of(record("2026-01-08T14:30:05Z", new Document("temp", 20)),
+                        record("2026-01-08T14:30:45Z", new Document("temp", 24))));
+
+        flowRollupService.reconcile(Instant.parse("2026-01-09T01:00:00Z"));
+
+        ArgumentCaptor<Query> raw = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(raw.capture(), eq(Document.class), eq(FlowRecord.COLLECTION));
+        assertEquals("flow-1", raw.getValue().getQueryObject().get("flow_id"));
+        assertEquals(Date.from(Instant.parse("2026-01-09T00:00:00Z")),
+                raw.getValue().getQueryObject().get("ts", Document.class).get("$lt"));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(3)).upsert(query.capture(), update.capture());
+        verify(bulkOperations).remove(any(Query.class));
+        verify(bulkOperations).execute();
+        int minute = indexOf(query.getAllValues(), RollupResolution.MINUTE);
+        Document set = update.getAllValues().get(minute).getUpdateObject().get("$set", Document.class);
+        assertEquals(2L, set.get("count"));
+        assertEquals(44.0, set.get("fields", Document.class).get("temp", Document.class).get("sum"));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(FlowRollupService.DIRTY_COLLECTION));
+        assertEquals(markedAt, removed.getValue().getQueryObject().get("markedAt"));
+    }
+
+    @Test
+    void testReconcile_KeepsMarkerWhileDayIsOpen() {
+        Document marker = new Document("_id", "flow-1|2026-01-08T00:00:00Z").append("flow_id", "flow-1")
+                .append("day", Date.from(Instant.parse("2026-01-08T00:00:00Z"))).append("markedAt", new Date());
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(FlowRollupService.DIRTY_COLLECTION)))
+                .thenReturn(List.of(new Document("_id", marker.get("_id"))));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq(FlowRollupService.DIRTY_COLLECTION))).thenReturn(marker);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FlowRollup.COLLECTION))
+                .thenReturn(bulkOperations);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(FlowRecord.COLLECTION))).thenReturn(
+                Stream.of(record("2026-01-08T14:30:05Z", new Document("temp", 20))));
+
+        flowRollupService.reconcile(Instant.parse("2026-01-08T15:00:00Z"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(1)).upsert(query.capture(), any(Update.class));
+        assertEquals(RollupResolution.MINUTE.name(), query.getValue().getQueryObject().get("resolution"));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(FlowRollupService.DIRTY_COLLECTION));
+    }
+
+    @Test
+    void testWriteCsv_WritesStatsPerField() throws Exception {
+        FlowRollup rollup = new FlowRollup();
+        rollup.setBucket(Instant.parse("2026-01-08T14:00:00Z"));
+        rollup.setCount(4);
+        rollup.setFields(Map.of("temp", new FlowRollup.FieldStats(4, 10, 1, 4)));
+        when(mongoTemplate.stream(any(Query.class), eq(FlowRollup.class))).thenReturn(Stream.of(rollup));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = flowRollupService.writeCsv("flow-1", RollupResolution.HOUR, null, null, 0, out);
+
+        assertEquals(1, rows);
+        assertEquals("bucket,count,temp_min,temp_max,temp_sum,temp_avg,_extra\n"
+                + "2026-01-08T14:00:00Z,4,1.0,4.0,10.0,2.5,\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSnapshotRange_VersionFollowsRecordCount() {
+        Date last = Date.from(Instant.parse("2026-01-08T14:00:00Z"));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(FlowRollup.COLLECTION), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document("rows", 2).append("records", 7L)
+                        .append("last", last)), new Document()));
+
+        RangeSnapshot snapshot = flowRollupService.snapshotRange("flow-1", RollupResolution.HOUR, null, null);
+
+        assertEquals(2, snapshot.rows());
+        assertEquals("2:7:" + last, snapshot.version());
+    }
+
+    private static Document record(String ts, Document data) {
+        return new Document("flow_id", "flow-1").append("ts", Date.from(Instant.parse(ts))).append("data", data);
+    }
+
+    private static int indexOf(List<Query> queries, RollupResolution resolution) {
+        for (int i = 0; i < queries.size(); i++) {
+            if (resolution.name().equals(queries.get(i).getQueryObject().get("resolution"))) {
+                return i;
+            }
+        }
+        throw new AssertionError("Brak zapytania dla " + resolution);
+    }
+}
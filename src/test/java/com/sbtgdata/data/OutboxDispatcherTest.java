@@ -0,0 +1,78 @@
+package com.sbtgdata.data;
+
+import com.sbtgdata.config.ErrorEventPublisher;
+import com.sbtgdata.config.WebhookCallNotPermittedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private ErrorEventPublisher errorEventPublisher;
+
+    @Mock
+    private OutboxEventHandler handler;
+
+    private OutboxDispatcher dispatcher;
+    private OutboxEvent event;
+
+    @BeforeEach
+    void setUp() {
+        when(handler.getEventTypes()).thenReturn(Set.of(OutboxEvent.FLOW_STARTED));
+        dispatcher = new OutboxDispatcher(outboxService, errorEventPublisher, List.of(handler), 1);
+        event = new OutboxEvent(OutboxEvent.FLOW_STARTED, "flow-1", Map.of("flow_id", "flow-1"));
+    }
+
+    @Test
+    void testDeliver_OpenCircuitDefersWithoutConsumingAttempt() {
+        doThrow(new IllegalStateException("Błąd", new WebhookCallNotPermittedException("otwarty", Duration.ofSeconds(5))))
+                .when(handler).deliver(event);
+        when(outboxService.defer(event, Duration.ofSeconds(5))).thenReturn(true);
+
+        dispatcher.deliver(event);
+
+        verify(outboxService).defer(event, Duration.ofSeconds(5));
+        verify(outboxService, never()).fail(any(), any());
+        verifyNoInteractions(errorEventPublisher);
+    }
+
+    @Test
+    void testDeliver_OpenCircuitFailsOnceDeferralsRunOut() {
+        IllegalStateException failure = new IllegalStateException("otwarty",
+                new WebhookCallNotPermittedException("otwarty", Duration.ofSeconds(5)));
+        doThrow(failure).when(handler).deliver(event);
+        when(outboxService.defer(event, Duration.ofSeconds(5))).thenReturn(false);
+        when(outboxService.fail(event, "otwarty")).thenReturn(true);
+
+        dispatcher.deliver(event);
+
+        verify(handler).onDeliveryFailed(event, failure);
+    }
+
+    @Test
+    void testDeliver_ExhaustedFailureRunsCompensation() {
+        IllegalStateException failure = new IllegalStateException("500");
+        doThrow(failure).when(handler).deliver(event);
+        when(outboxService.fail(event, "500")).thenReturn(true);
+
+        dispatcher.deliver(event);
+
+        verify(handler).onDeliveryFailed(event, failure);
+        verify(outboxService, never()).complete(any());
+    }
+}
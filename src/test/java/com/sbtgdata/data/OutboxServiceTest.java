@@ -0,0 +1,193 @@
+package com.sbtgdata.data;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxServiceTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private OutboxService outboxService;
+
+    private OutboxEvent event;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxService, "initialBackoff", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(outboxService, "maxBackoff", Duration.ofMinutes(5));
+
+        event = new OutboxEvent(OutboxEvent.FLOW_CREATED, "flow-1", null);
+        event.setId("event-1");
+    }
+
+    @Test
+    void testDefer_CountsDeferralsUpToLimit() {
+        ReflectionTestUtils.setField(outboxService, "maxDeferrals", 2);
+
+        assertTrue(outboxService.defer(event, Duration.ofSeconds(30)));
+        event.setDeferrals(2);
+        assertFalse(outboxService.defer(event, Duration.ofSeconds(30)));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), update.capture(), eq(OutboxEvent.class));
+        assertEquals(1, update.getValue().getUpdateObject().get("$inc", Document.class).get("deferrals"));
+    }
+
+    @Test
+    void testClaim_OnlyPendingDueOrExpiredLease() {
+        OutboxEvent claimed = new OutboxEvent();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OutboxEvent.class))).thenReturn(claimed);
+
+        assertSame(claimed, outboxService.claim(event, Duration.ofMinutes(2)));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(),
+                eq(OutboxEvent.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertEquals("event-1", criteria.get("id"));
+        List<?> alternatives = criteria.get("$or", List.class);
+        assertEquals(2, alternatives.size());
+        Document pending = (Document) alternatives.get(0);
+        assertEquals(OutboxEvent.STATUS_PENDING, pending.get("status"));
+        assertTrue(pending.get("nextAttemptAt", Document.class).containsKey("$lte"));
+        Document expired = (Document) alternatives.get(1);
+        assertEquals(OutboxEvent.STATUS_IN_PROGRESS, expired.get("status"));
+        assertTrue(expired.get("lockedUntil", Document.class).containsKey("$lte"));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(OutboxEvent.STATUS_IN_PROGRESS, set.get("status"));
+        assertNotNull(set.get("lockedUntil"));
+        assertTrue(options.getValue().isReturnNew());
+    }
+
+    @Test
+    void testClaim_AlreadyClaimedReturnsNull() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(OutboxEvent.class))).thenReturn(null);
+
+        assertNull(outboxService.claim(event, Duration.ofMinutes(2)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFindDueHeads_GroupsByAggregateBeforeFilteringDue() {
+        when(mongoTemplate.aggregate(any(TypedAggregation.class), eq(OutboxEvent.class)))
+                .thenReturn(new AggregationResults<>(List.of(event), new Document()));
+
+        assertEquals(List.of(event), outboxService.findDueHeads(25));
+
+        ArgumentCaptor<TypedAggregation<OutboxEvent>> captor = ArgumentCaptor.forClass(TypedAggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq(OutboxEvent.class));
+        List<Document> pipeline = captor.getValue().toPipeline(
+                org.springframework.data.mongodb.core.aggregation.Aggregation.DEFAULT_CONTEXT);
+        List<String> stages = pipeline.stream().map(stage -> stage.keySet().iterator().next()).toList();
+        assertEquals(List.of("$match", "$sort", "$group", "$replaceRoot", "$match", "$sort", "$limit"), stages);
+        Document headStatus = pipeline.get(0).get("$match", Document.class).get("status", Document.class);
+        assertEquals(List.of(OutboxEvent.STATUS_PENDING, OutboxEvent.STATUS_IN_PROGRESS), headStatus.get("$in"));
+        assertEquals("$aggregateId", pipeline.get(2).get("$group", Document.class).get("_id"));
+        assertTrue(pipeline.get(4).get("$match", Document.class).containsKey("$or"));
+        assertEquals(25L, ((Number) pipeline.get(6).get("$limit")).longValue());
+    }
+
+    @Test
+    void testFail_BelowLimitReschedulesWithBackoff() {
+        event.setAttempts(0);
+
+        assertFalse(outboxService.fail(event, "timeout"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(OutboxEvent.class));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(1, set.get("attempts"));
+        assertEquals(OutboxEvent.STATUS_PENDING, set.get("status"));
+        assertNotNull(set.get("nextAttemptAt"));
+        assertTrue(update.getValue().getUpdateObject().get("$unset", Document.class).containsKey("lockedUntil"));
+    }
+
+    @Test
+    void testFail_ExhaustedMarksFailed() {
+        event.setAttempts(2);
+
+        assertTrue(outboxService.fail(event, "timeout"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(OutboxEvent.class));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(OutboxEvent.STATUS_FAILED, set.get("status"));
+        assertFalse(set.containsKey("nextAttemptAt"));
+    }
+
+    @Test
+    void testBackoff_GrowsExponentiallyWithJitter() {
+        for (int i = 0; i < 50; i++) {
+            long first = outboxService.backoff(1).toMillis();
+            long third = outboxService.backoff(3).toMillis();
+            assertTrue(first >= 1800 && first <= 2200, "backoff(1) = " + first);
+            assertTrue(third >= 7200 && third <= 8800, "backoff(3) = " + third);
+        }
+    }
+
+    @Test
+    void testBackoff_CappedAndDoesNotOverflow() {
+        long cap = Duration.ofMinutes(5).toMillis();
+        for (int attempts : new int[] {9, 30, 64, 1000}) {
+            long backoff = outboxService.backoff(attempts).toMillis();
+            assertTrue(backoff >= cap * 9 / 10 && backoff <= cap * 11 / 10, "backoff(" + attempts + ") = " + backoff);
+        }
+    }
+
+    @Test
+    void testRemoveFailedPayloadField_UnsetsOnlyFailedEventsOfType() {
+        outboxService.removeFailedPayloadField(OutboxEvent.USER_CREATED, "API_KEY");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(OutboxEvent.class));
+        assertEquals(OutboxEvent.USER_CREATED, query.getValue().getQueryObject().get("type"));
+        assertEquals(OutboxEvent.STATUS_FAILED, query.getValue().getQueryObject().get("status"));
+        assertTrue(update.getValue().getUpdateObject().get("$unset", Document.class).containsKey("payload.API_KEY"));
+    }
+
+    @Test
+    void testSetPendingPayloadField_SkipsFailedEvents() {
+        outboxService.setPendingPayloadField(OutboxEvent.USER_CREATED, "user-1", "API_KEY", "new-key");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(OutboxEvent.class));
+        assertEquals("user-1", query.getValue().getQueryObject().get("aggregateId"));
+        assertEquals(List.of(OutboxEvent.STATUS_PENDING, OutboxEvent.STATUS_IN_PROGRESS),
+                query.getValue().getQueryObject().get("status", Document.class).get("$in"));
+        assertEquals("new-key", update.getValue().getUpdateObject().get("$set", Document.class).get("payload.API_KEY"));
+    }
+}
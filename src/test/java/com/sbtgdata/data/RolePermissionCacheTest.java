@@ -0,0 +1,56 @@
+package com.sbtgdata.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RolePermissionCacheTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @InjectMocks
+    private RolePermissionCache rolePermissionCache;
+
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        userRole = new Role("USER");
+        userRole.setAllowedViews(Set.of("com.sbtgdata.views.DataFlowView"));
+        Role analystRole = new Role("ANALYST");
+        analystRole.setAllowedViews(Set.of("com.sbtgdata.views.ErrorsView"));
+        when(roleRepository.findAll()).thenReturn(List.of(userRole, analystRole));
+    }
+
+    @Test
+    void testGetAllowedViews_LoadsRolesOnce() {
+        assertEquals(Set.of("com.sbtgdata.views.DataFlowView", "com.sbtgdata.views.ErrorsView"),
+                rolePermissionCache.getAllowedViews(Set.of("USER", "ANALYST")));
+        assertEquals(Set.of("com.sbtgdata.views.DataFlowView"),
+                rolePermissionCache.getAllowedViews(Set.of("USER", "MISSING")));
+
+        verify(roleRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testInvalidate_ReloadsChangedRoles() {
+        rolePermissionCache.getAllowedViews(Set.of("USER"));
+        userRole.setAllowedViews(Set.of("com.sbtgdata.views.ApiKeyView"));
+
+        rolePermissionCache.invalidate();
+
+        assertEquals(Set.of("com.sbtgdata.views.ApiKeyView"), rolePermissionCache.getAllowedViews(Set.of("USER")));
+        verify(roleRepository, times(2)).findAll();
+    }
+}
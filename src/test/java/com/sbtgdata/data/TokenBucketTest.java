@@ -0,0 +1,43 @@
+package com.sbtgdata.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final TokenBucket bucket = new TokenBucket(10, 20, now::get);
+
+    @Test
+    void testTryAcquire_AllowsBurstThenReportsWait() {
+        assertEquals(0, bucket.tryAcquire(20));
+
+        long wait = bucket.tryAcquire(5);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), wait);
+        now.addAndGet(wait);
+        assertEquals(0, bucket.tryAcquire(5));
+        assertFalse(bucket.isFull());
+    }
+
+    @Test
+    void testTryAcquire_AllowsRequestLargerThanBurstOnlyWhenFull() {
+        assertEquals(0, bucket.tryAcquire(50));
+        assertTrue(bucket.tryAcquire(1) > 0);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(bucket.isFull());
+    }
+
+    @Test
+    void testRelease_ReturnsTokens() {
+        assertEquals(0, bucket.tryAcquire(20));
+        bucket.release(10);
+
+        assertEquals(0, bucket.tryAcquire(10));
+    }
+}
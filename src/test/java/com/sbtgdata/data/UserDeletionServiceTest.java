@@ -0,0 +1,177 @@
+package com.sbtgdata.data;
+
+import com.sbtgdata.config.ErrorEventPublisher;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDeletionServiceTest {
+
+    private static final String USER_ID = new ObjectId().toHexString();
+
+    @Mock
+    private UserDeletionJobRepository jobRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private DataFlowRepository dataFlowRepository;
+
+    @Mock
+    private DataFlowService dataFlowService;
+
+    @Mock
+    private FlowErrorService flowErrorService;
+
+    @Mock
+    private FlowDataService flowDataService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ErrorEventPublisher errorEventPublisher;
+
+    @InjectMocks
+    private UserDeletionService userDeletionService;
+
+    private final ExecutorService teardownExecutor = Executors.newFixedThreadPool(2);
+    private DataFlow runningFlow;
+    private DataFlow deletingFlow;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userDeletionService, "teardownExecutor", teardownExecutor);
+
+        UserDeletionJob job = new UserDeletionJob(USER_ID, "test@example.com");
+        job.setId("job-id");
+        lenient().when(jobRepository.findById("job-id")).thenReturn(Optional.of(job));
+
+        runningFlow = new DataFlow();
+        runningFlow.setId("flow-1");
+        runningFlow.setStatus(DataFlow.STATUS_RUNNING);
+        deletingFlow = new DataFlow();
+        deletingFlow.setId("flow-2");
+        deletingFlow.setStatus(DataFlow.STATUS_DELETING);
+        lenient().when(mongoTemplate.find(any(Query.class), eq(DataFlow.class)))
+                .thenReturn(List.of(runningFlow, deletingFlow));
+    }
+
+    @AfterEach
+    void tearDown() {
+        teardownExecutor.shutdown();
+    }
+
+    @Test
+    void testOnProvisioningFailed_StartsDeletionOfExistingUser() {
+        ExecutorService jobExecutor = mock(ExecutorService.class);
+        ReflectionTestUtils.setField(userDeletionService, "jobExecutor", jobExecutor);
+        User user = new User();
+        user.setId(USER_ID);
+        user.setEmail("test@example.com");
+        when(userRepository.existsById(USER_ID)).thenReturn(true);
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+        when(jobRepository.save(any(UserDeletionJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userDeletionService.onProvisioningFailed(new UserProvisioningFailedEvent(USER_ID));
+
+        verify(jobRepository).save(any(UserDeletionJob.class));
+        verify(jobExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void testRun_SkipsProcessedFlowsThenPurgesAndDeletesAccount() {
+        when(dataFlowRepository.findIdsByUserId(any(ObjectId.class))).thenReturn(List.of(runningFlow, deletingFlow));
+
+        userDeletionService.run("job-id");
+
+        verify(dataFlowService).markForDeletion(runningFlow);
+        verify(dataFlowService, never()).markForDeletion(deletingFlow);
+        verify(flowErrorService).deleteAllErrorsByFlowIds(List.of("flow-1", "flow-2"));
+        verify(flowDataService).deleteByFlowIds(List.of("flow-1", "flow-2"));
+        verify(dataFlowService).deleteAllByUserId(USER_ID);
+        verify(userService).deleteAccount(USER_ID);
+        assertTrue(capturedUpdates().stream()
+                .anyMatch(update -> UserDeletionJob.STATUS_COMPLETED.equals(update.getUpdateObject()
+                        .get("$set", Document.class).get("status"))));
+    }
+
+    @Test
+    void testRun_FailedTeardownStopsBeforePurge() {
+        doThrow(new IllegalStateException("Mongo niedostępne")).when(dataFlowService).markForDeletion(runningFlow);
+
+        userDeletionService.run("job-id");
+
+        verify(dataFlowService, never()).deleteAllByUserId(anyString());
+        verify(userService, never()).deleteAccount(anyString());
+        verify(errorEventPublisher).publish(eq("job-id"), isNull(), eq(USER_ID), anyString());
+    }
+
+    @Test
+    void testRetry_ReturnsUpdatedJobAndResubmits() {
+        ExecutorService jobExecutor = mock(ExecutorService.class);
+        ReflectionTestUtils.setField(userDeletionService, "jobExecutor", jobExecutor);
+        UserDeletionJob updated = new UserDeletionJob(USER_ID, "test@example.com");
+        updated.setId("job-id");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(org.springframework.data.mongodb.core.FindAndModifyOptions.class), eq(UserDeletionJob.class)))
+                .thenReturn(updated);
+
+        assertSame(updated, userDeletionService.retry("job-id"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<org.springframework.data.mongodb.core.FindAndModifyOptions> options =
+                ArgumentCaptor.forClass(org.springframework.data.mongodb.core.FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(Update.class), options.capture(),
+                eq(UserDeletionJob.class));
+        assertEquals(UserDeletionJob.STATUS_FAILED, query.getValue().getQueryObject().get("status"));
+        assertTrue(options.getValue().isReturnNew());
+        verify(jobExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void testRetry_NotFailedIsRejectedWithoutResubmit() {
+        ExecutorService jobExecutor = mock(ExecutorService.class);
+        ReflectionTestUtils.setField(userDeletionService, "jobExecutor", jobExecutor);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(org.springframework.data.mongodb.core.FindAndModifyOptions.class), eq(UserDeletionJob.class)))
+                .thenReturn(null);
+        when(jobRepository.existsById("job-id")).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> userDeletionService.retry("job-id"));
+
+        verifyNoInteractions(jobExecutor);
+    }
+
+    private List<Update> capturedUpdates() {
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(),
+                eq(UserDeletionJob.class));
+        return updates.getAllValues();
+    }
+}
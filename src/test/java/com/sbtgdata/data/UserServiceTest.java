@@ -3,18 +3,27 @@ package com.sbtgdata.data;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 import com.sbtgdata.config.ErrorEventPublisher;
 
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +41,15 @@ class UserServiceTest {
     @Mock
     private ErrorEventPublisher errorEventPublisher;
 
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ApiKeyService apiKeyService;
+
     @InjectMocks
     private UserService userService;
 
@@ -43,6 +61,8 @@ class UserServiceTest {
         testUser.setId("test-user-id");
         testUser.setEmail("test@example.com");
         testUser.setPassword("encoded-password");
+
+        ReflectionTestUtils.setField(userService, "userCreateWebhookEndpoint", "http://test-user-create.com");
     }
 
     @Test
@@ -55,28 +75,85 @@ class UserServiceTest {
             user.setId("new-user-id");
             return user;
         });
-        when(restTemplate.postForEntity(anyString(), any(), any(Class.class)))
-                .thenReturn(org.springframework.http.ResponseEntity.ok("OK"));
-
+        when(apiKeyService.hash(anyString())).thenAnswer(invocation -> "hash:" + invocation.getArgument(0));
         User result = userService.registerUser("test@example.com", "password", "USER");
 
-        assertNotNull(result);
-        assertNotNull(result.getApiKey());
-        assertFalse(result.getApiKey().isEmpty());
+        ArgumentCaptor<Map<String, Object>> payload = ArgumentCaptor.forClass(Map.class);
+        verify(outboxService).enqueue(eq(OutboxEvent.USER_CREATED), eq("new-user-id"), payload.capture());
+        String apiKey = (String) payload.getValue().get("API_KEY");
+        assertNotNull(apiKey);
+        assertFalse(apiKey.isEmpty());
+        assertEquals("new-user-id", payload.getValue().get("user_id"));
+        assertEquals("hash:" + apiKey, result.getApiKeyHash());
         verify(userRepository, times(1)).save(any(User.class));
+        verifyNoInteractions(restTemplate);
     }
 
     @Test
-    void testRegenerateApiKey() {
+    void testDeliverUserCreated_SendsApiKeyFromPayload() {
+        when(userRepository.existsById("test-user-id")).thenReturn(true);
+        when(restTemplate.postForEntity(eq("http://test-user-create.com"), any(), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("OK"));
+
+        userService.deliver(new OutboxEvent(OutboxEvent.USER_CREATED, "test-user-id",
+                Map.of("user_id", "test-user-id", "API_KEY", "current-key")));
+
+        ArgumentCaptor<HttpEntity<Map<String, Object>>> captor = ArgumentCaptor.forClass(HttpEntity.class);
+        verify(restTemplate).postForEntity(eq("http://test-user-create.com"), captor.capture(), eq(String.class));
+        assertEquals("current-key", captor.getValue().getBody().get("API_KEY"));
+        assertEquals("test-user-id", captor.getValue().getBody().get("user_id"));
+    }
+
+    @Test
+    void testOnDeliveryFailed_UserCreatedRequestsAccountDeletion() {
+        OutboxEvent event = new OutboxEvent(OutboxEvent.USER_CREATED, "test-user-id",
+                Map.of("user_id", "test-user-id"));
+
+        userService.onDeliveryFailed(event, new IllegalStateException("Endpoint zwrócił status 500"));
+
+        ArgumentCaptor<UserProvisioningFailedEvent> captor = ArgumentCaptor.forClass(UserProvisioningFailedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertEquals("test-user-id", captor.getValue().getUserId());
+        verify(errorEventPublisher).publish(any(), isNull(), eq("test-user-id"), anyString());
+        verify(outboxService).removeFailedPayloadField(OutboxEvent.USER_CREATED, "API_KEY");
+    }
+
+    @Test
+    void testDeliverUserCreated_UserAlreadyDeleted_SkipsWebhook() {
+        when(userRepository.existsById("test-user-id")).thenReturn(false);
 
+        userService.deliver(new OutboxEvent(OutboxEvent.USER_CREATED, "test-user-id",
+                Map.of("user_id", "test-user-id", "API_KEY", "current-key")));
+
+        verifyNoInteractions(restTemplate);
+    }
+
+    @Test
+    void testRegenerateApiKey() {
+        testUser.setApiKeyHash("old-hash");
         when(userRepository.findById("test-user-id")).thenReturn(Optional.of(testUser));
         when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(apiKeyService.hash(anyString())).thenAnswer(invocation -> "hash:" + invocation.getArgument(0));
 
         String newApiKey = userService.regenerateApiKey("test-user-id");
 
         assertNotNull(newApiKey);
         assertFalse(newApiKey.isEmpty());
+        assertEquals("hash:" + newApiKey, testUser.getApiKeyHash());
         verify(userRepository, times(1)).save(testUser);
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
+        verify(apiKeyService).invalidateHash("old-hash");
+        verify(apiKeyService).invalidate(newApiKey);
+        verify(outboxService).setPendingPayloadField(OutboxEvent.USER_CREATED, "test-user-id", "API_KEY", newApiKey);
+    }
+
+    @Test
+    void testDeliverUserCreated_MissingApiKeyFails() {
+        when(userRepository.existsById("test-user-id")).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> userService.deliver(new OutboxEvent(
+                OutboxEvent.USER_CREATED, "test-user-id", Map.of("user_id", "test-user-id"))));
+        verifyNoInteractions(restTemplate);
     }
 
     @Test
@@ -88,15 +165,4 @@ class UserServiceTest {
             userService.regenerateApiKey("non-existent");
         });
     }
-
-    @Test
-    void testGetApiKey() {
-
-        testUser.setApiKey("test-api-key");
-        when(userRepository.findById("test-user-id")).thenReturn(Optional.of(testUser));
-
-        String apiKey = userService.getApiKey("test-user-id");
-
-        assertEquals("test-api-key", apiKey);
-    }
 }
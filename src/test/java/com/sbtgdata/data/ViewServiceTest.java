@@ -0,0 +1,41 @@
+package com.sbtgdata.data;
+
+import com.sbtgdata.views.DataFlowView;
+import com.sbtgdata.views.LoginView;
+import com.sbtgdata.views.RoleManagementView;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewServiceTest {
+
+    private static final ViewService viewService = new ViewService();
+
+    @BeforeAll
+    static void buildRegistry() {
+        viewService.buildRegistry();
+    }
+
+    @Test
+    void testRegistry_DescribesViewsOnce() {
+        ViewDescriptor login = viewService.getView(LoginView.class);
+        assertTrue(login.openToAll());
+        assertFalse(login.navigable());
+
+        ViewDescriptor roles = viewService.getView(RoleManagementView.class);
+        assertTrue(roles.adminOnly());
+        assertEquals("Zarządzanie Rolami", roles.title());
+
+        assertEquals("Moje przepływy danych", viewService.getAllViews().get(DataFlowView.class.getName()));
+        assertSame(viewService.getViews(), viewService.getViews());
+    }
+
+    @Test
+    void testRegistry_SortedByTitle() {
+        assertEquals(viewService.getViews().stream().sorted(Comparator.comparing(ViewDescriptor::title)).toList(),
+                viewService.getViews());
+    }
+}